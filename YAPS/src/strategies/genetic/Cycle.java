@@ -3,26 +3,29 @@ package strategies.genetic;
 import java.util.List;
 
 import yaps.graph_library.Graph;
-import yaps.graph_library.Path;
-import yaps.graph_library.algorithms.AllShortestPaths;
+import yaps.graph_library.IntPath;
+import yaps.graph_library.algorithms.ShortestPathOracle;
+import yaps.graph_library.algorithms.ShortestPaths;
 
 
 //ciclos so imutaveis, a logica da classe Solution depende dessa propriedade
 public class Cycle {
-	Path vertexes; // don't need to reinsert the first
+	IntPath vertexes; // don't need to reinsert the first
 	double cost;
 	
 	// criar um displacement aqui???
 	
 	Cycle(List<Integer> vertices) {
-		this.vertexes = new Path(vertices);
+		this.vertexes = new IntPath(vertices);
 	}
 	
 	// criar metodos para trocar vertices e para fazer as alteracoes das heuristicas de TSP 
 
 	public void setCost(Graph graph) {
-		AllShortestPaths paths = new AllShortestPaths(graph);
-		paths.compute();
+		setCost(graph, new ShortestPathOracle(graph));
+	}
+	
+	public void setCost(Graph graph, ShortestPaths paths) {
 		this.vertexes = this.vertexes.expandShortestPaths(paths);
 		this.cost = this.vertexes.getCost(graph);
 	}
@@ -4,14 +4,18 @@ import java.io.IOException;
 
 import yaps.graph_library.Graph;
 import yaps.graph_library.GraphFileUtil;
+import yaps.graph_library.algorithms.AllShortestPaths;
 
 public class Main {
 
 	public static void main(String[] args) throws IOException {
 		Graph g = GraphFileUtil.readGraphml("..\\Experiment Setup & Analysis\\maps\\extra\\random_directed_2.graphml");
 		
+		AllShortestPaths paths = new AllShortestPaths(g);
+		paths.compute();
+		
 		for (int i = 0; i < 10; i++) {
-			System.out.println(Solution.newRandomSolution(g, 8));
+			System.out.println(Solution.newRandomSolution(g, 8, paths));
 		}
 
 	}
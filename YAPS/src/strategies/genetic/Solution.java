@@ -5,6 +5,8 @@ import java.util.LinkedList;
 import java.util.List;
 
 import yaps.graph_library.Graph;
+import yaps.graph_library.algorithms.AllShortestPaths;
+import yaps.graph_library.algorithms.ShortestPaths;
 import yaps.util.RandomUtil;
 
 //outra ideia: calcular o melhor "displacement" de cada agente dentro de seu ciclo
@@ -13,15 +15,22 @@ public class Solution {
 	private Cycle[] cycles;
 	double evaluation;
 	
-	Solution(Cycle[] c, Graph g) {
+	Solution(Cycle[] c, Graph g, ShortestPaths paths) {
 		this.cycles = c;
 		this.evaluation = -1;
 		for (int i = 0; i < c.length; i++) {
-			this.cycles[i].setCost(g);
+			this.cycles[i].setCost(g, paths);
 		}
 	}
 	
 	static Solution newRandomSolution(Graph g, int numCycles) {
+		AllShortestPaths paths = new AllShortestPaths(g);
+		paths.compute();
+		return newRandomSolution(g, numCycles, paths);
+	}
+
+	//the shortest paths may be reused for many solutions of the same graph
+	static Solution newRandomSolution(Graph g, int numCycles, ShortestPaths paths) {
 		int numNodes = g.getNumNodes();
 		int totalVertices = numNodes + RandomUtil.chooseInteger(0,numNodes/10 + 1); //up to 10% bigger
 		
@@ -64,7 +73,7 @@ public class Solution {
 			cycles[nextCycles-1] = new Cycle(cycleVertices);
 		}
 		
-		return new Solution(cycles, g);
+		return new Solution(cycles, g, paths);
 	}
 
 	
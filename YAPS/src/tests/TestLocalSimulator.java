@@ -0,0 +1,249 @@
+package tests;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+import yaps.graph_library.Edge;
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphDataRepr;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.local_simulator.Action;
+import yaps.local_simulator.ActionBuffer;
+import yaps.local_simulator.LocalSimulator;
+import yaps.local_simulator.LocalSimulatorConnector;
+import yaps.metrics.core.MetricsSuite;
+import yaps.metrics.core.VisitListener;
+import yaps.metrics.core.VisitsList;
+
+
+public class TestLocalSimulator {
+
+	public static void main(String[] args) throws IOException {
+		Graph graph = GraphFileUtil.read("maps/map_grid.xml", GraphFileFormat.SIMPATROL, GraphDataRepr.CSR);
+		int turns = 2000;
+
+		LocalSimulatorConnector connector = new LocalSimulatorConnector(graph, turns);
+		for (int a = 0; a < 4; a++) {
+			connector.addAgent(new GreedyAgent(), a * graph.getNumNodes() / 4);
+		}
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+
+		VisitsList visits = connector.getVisitsList();
+
+		/* Cada agente deve andar apenas por arestas, chegando no tempo dado pelo comprimento
+		 */
+		System.out.printf("%d visits, valid paths: %s\n", visits.getNumVisits(), validPaths(graph, visits, 4));
+
+		MetricsSuite metrics = new MetricsSuite(graph.getNumNodes(), 0, turns, visits);
+		System.out.printf("Greedy agents: average idleness %.2f, maximum interval %.0f\n",
+				metrics.getIdlenessReport().getAverageIdleness(), metrics.getIntervalReport().getMaximumInterval());
+
+		/* O modo de eventos discretos deve gerar exatamente as mesmas visitas, na mesma ordem
+		 */
+		connector.setupSimulation();
+		connector.setEventDriven(true);
+		for (int a = 0; a < 4; a++) {
+			connector.addAgent(new GreedyAgent(), a * graph.getNumNodes() / 4);
+		}
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+		System.out.printf("Event-driven mode, same visits: %s\n", sameVisits(visits, connector.getVisitsList()));
+
+		// desempenho: muitos agentes aleatorios, contando as visitas
+		VisitsList singleThread = benchmark("Random agents", graph, 5000, 2000, false, 1);
+
+		/* Com varias threads, as visitas devem ser as mesmas, para qualquer numero de threads
+		 */
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads : new int[] { 2, 3, Math.max(4, cores) }) {
+			VisitsList parallel = benchmark("Random agents, " + threads + " threads", graph, 5000, 2000, false, threads);
+			System.out.printf("Same visits: %s\n", sameVisits(singleThread, parallel));
+		}
+
+		/* Agentes que escrevem as acoes no buffer devem ter as mesmas visitas, sem criar objetos
+		 */
+		VisitsList returned = benchmark("Random agents, returning actions", graph, 1000, 2000, false, 1);
+		VisitsList buffered = benchmark("Random agents, writing in buffer", graph, 1000, 2000, true, false, 1);
+		System.out.printf("Same visits: %s\n", sameVisits(returned, buffered));
+		System.out.printf("Bytes allocated per agent-turn: returning actions %.2f, writing in buffer %.2f\n",
+				allocatedPerAgentTurn(graph, false), allocatedPerAgentTurn(graph, true));
+
+		// com arestas longas, o modo de eventos discretos evita os turnos sem visitas
+		Graph longGraph = scaleLengths(graph, 100);
+		VisitsList turnVisits = benchmark("Random agents, long edges, turns ", longGraph, 1000, 100000, false, 1);
+		VisitsList eventVisits = benchmark("Random agents, long edges, events", longGraph, 1000, 100000, true, 1);
+		System.out.printf("Same visits: %s\n", sameVisits(turnVisits, eventVisits));
+	}
+
+	static VisitsList benchmark(String title, Graph graph, int numAgents, int turns, boolean eventDriven, int threads) {
+		return benchmark(title, graph, numAgents, turns, false, eventDriven, threads);
+	}
+
+	static VisitsList benchmark(String title, Graph graph, int numAgents, int turns, boolean buffered,
+			boolean eventDriven, int threads) {
+		Agent[] agents = randomAgents(numAgents, buffered);
+		int[] startNodes = new int[numAgents];
+		for (int a = 0; a < numAgents; a++) {
+			startNodes[a] = a % graph.getNumNodes();
+		}
+		VisitsList visits = new VisitsList();
+		LocalSimulator simulator = new LocalSimulator(graph, turns, agents, startNodes, visits);
+		simulator.setEventDriven(eventDriven);
+		simulator.setNumThreads(threads);
+
+		long start = System.nanoTime();
+		simulator.simulate();
+		double seconds = (System.nanoTime() - start) / 1.0e9;
+
+		System.out.printf("%s: %d visits, %.1f million agent-turns per second\n", title, visits.getNumVisits(),
+				(double)numAgents * turns / seconds / 1.0e6);
+		return visits;
+	}
+
+	static Agent[] randomAgents(int numAgents, boolean buffered) {
+		Agent[] agents = new Agent[numAgents];
+		for (int a = 0; a < numAgents; a++) {
+			agents[a] = buffered ? new BufferedRandomAgent(a) : new RandomAgent(a);
+		}
+		return agents;
+	}
+
+	// bytes allocated by the current thread in a simulation (warmed up) that only counts the visits
+	static double allocatedPerAgentTurn(Graph graph, boolean buffered) {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		int numAgents = 1000;
+		int turns = 2000;
+		final long[] counter = new long[1];
+		VisitListener listener = new VisitListener() {
+			public void onVisit(long time, int node, int agent) {
+				counter[0] ++;
+			}
+		};
+		int[] startNodes = new int[numAgents];
+		long bytes = 0;
+		for (int i = 0; i < 2; i++) {
+			LocalSimulator simulator = new LocalSimulator(graph, turns, randomAgents(numAgents, buffered), startNodes, listener);
+			long before = bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			simulator.simulate();
+			bytes = bean.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+		}
+		return (double)bytes / (numAgents * turns);
+	}
+
+	static boolean sameVisits(VisitsList x, VisitsList y) {
+		if (x.getNumVisits() != y.getNumVisits()) {
+			return false;
+		}
+		for (int i = 0; i < x.getNumVisits(); i++) {
+			if (x.getTime(i) != y.getTime(i) || x.getNode(i) != y.getNode(i) || x.getAgent(i) != y.getAgent(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// copy of the graph with the lengths of the edges multiplied by the factor
+	static Graph scaleLengths(Graph graph, int factor) {
+		Graph scaled = new Graph(graph.getNumNodes());
+		boolean[] added = new boolean[graph.getNumEdges()];
+		for (int v = 0; v < graph.getNumNodes(); v++) {
+			for (Edge e : graph.getOutEdges(v)) {
+				if (!added[e.getId()]) {
+					scaled.addEdge(e.getSource(), e.getTarget(), e.getLength() * factor, e.isDirected());
+					added[e.getId()] = true;
+				}
+			}
+		}
+		scaled.changeRepresentation(GraphDataRepr.CSR);
+		return scaled;
+	}
+
+	// checks if the consecutive visits of each agent are the ends of an edge, with times
+	// differing by the length of the edge
+	static boolean validPaths(Graph graph, VisitsList visits, int numAgents) {
+		for (int a = 0; a < numAgents; a++) {
+			VisitsList agentVisits = visits.filterByAgent(a);
+			for (int i = 1; i < agentVisits.getNumVisits(); i++) {
+				int v = agentVisits.getNode(i - 1);
+				int u = agentVisits.getNode(i);
+				if (!graph.existsEdge(v, u)
+						|| agentVisits.getTime(i) - agentVisits.getTime(i - 1) != Math.max(1, graph.getLength(v, u))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Goes to the neighbor with the highest idleness.
+	 */
+	static class GreedyAgent extends Agent {
+		@Override
+		public Action decide(SelfPerception self, GraphPerception perception) {
+			Graph graph = perception.getGraph();
+			int node = self.getNode();
+			int best = -1;
+			long bestIdleness = -1;
+
+			for (int i = 0; i < graph.getOutDegree(node); i++) {
+				int neighbor = graph.getOutTarget(node, i);
+				long idleness = perception.getIdleness(neighbor, self.getTime());
+				if (idleness > bestIdleness) {
+					best = neighbor;
+					bestIdleness = idleness;
+				}
+			}
+
+			return (best == -1) ? null : Action.goTo(best);
+		}
+	}
+
+	/**
+	 * Goes through a random edge (the same of RandomAgent), writing the action in the buffer.
+	 */
+	static class BufferedRandomAgent extends Agent {
+		private Random random;
+
+		BufferedRandomAgent(int seed) {
+			this.random = new Random(seed);
+		}
+
+		@Override
+		public void decide(SelfPerception self, GraphPerception perception, ActionBuffer actions) {
+			Graph graph = perception.getGraph();
+			int degree = graph.getOutDegree(self.getNode());
+			if (degree > 0) {
+				actions.goThrough(self.getIdentifier(), graph.getOutEdgeId(self.getNode(), random.nextInt(degree)));
+			}
+		}
+	}
+
+	/**
+	 * Goes through a random edge.
+	 */
+	static class RandomAgent extends Agent {
+		private Random random;
+
+		RandomAgent(int seed) {
+			this.random = new Random(seed);
+		}
+
+		@Override
+		public Action decide(SelfPerception self, GraphPerception perception) {
+			Graph graph = perception.getGraph();
+			int degree = graph.getOutDegree(self.getNode());
+			if (degree == 0) {
+				return null;
+			}
+			return Action.goThrough(graph.getOutEdgeId(self.getNode(), random.nextInt(degree)));
+		}
+	}
+
+}
@@ -1,8 +1,12 @@
 package tests;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import yaps.metrics.core.FrequencyMetricsReport;
 import yaps.metrics.core.IdlenessMetricsReport;
 import yaps.metrics.core.IntervalMetricsReport;
+import yaps.metrics.core.MetricsSuite;
 import yaps.metrics.core.VisitsList;
 
 
@@ -52,6 +56,119 @@ public class TestMetrics {
 		System.out.printf(" - visitacao e frequencia medias: %.3f / %.3f \n", freqReport.getAverageVisits(), freqReport.getAverageFrequency());
 		System.out.printf(" - desvio padro das visitacoes e das frequencias: %.3f / %.3f \n", freqReport.getStdDevOfVisits(), freqReport.getStdDevOfFrequencies());
 
+		System.out.println();
+		System.out.println(" ===== TODOS OS RELATORIOS JUNTOS =====");
+		MetricsSuite suite = new MetricsSuite(4, 1, 10, list);
+		
+		/* Devem ser iguais aos relatorios acima
+		 */
+		System.out.println("Intervalos iguais: " + suite.getIntervalReport().toString().equals(intervalReport.toString())
+				+ ", " + (suite.getIntervalReport().getStdDevOfIntervals() == intervalReport.getStdDevOfIntervals()));
+		System.out.println("Ociosidades iguais: " + suite.getIdlenessReport().toString().equals(idlenessReport.toString())
+				+ ", " + (suite.getIdlenessReport().getAverageIdleness() == idlenessReport.getAverageIdleness()));
+		System.out.println("Frequencias iguais: " + suite.getFrequencyReport().toString().equals(freqReport.toString()));
+
+		System.out.println();
+		System.out.println(" ===== METRICAS PONDERADAS =====");
+		
+		/* Sem pesos, devem ser iguais as metricas normais
+		 */
+		System.out.printf("Sem pesos: intervalo medio %s (%s), desvio padrao %s (%s), ociosidade media %s (%s), frequencia media %s (%s)\n",
+				intervalReport.getWeightedAverageInterval(), intervalReport.getAverageInterval(),
+				intervalReport.getWeightedStdDevOfIntervals(), intervalReport.getStdDevOfIntervals(),
+				idlenessReport.getWeightedAverageIdleness(), idlenessReport.getAverageIdleness(),
+				freqReport.getWeightedAverageFrequency(), freqReport.getAverageFrequency());
+		
+		double[] weights = { 1.0, 2.0, 0.5, 1.0 };
+		MetricsSuite weighted = new MetricsSuite(4, 1, 10, list, weights);
+		
+		System.out.printf("Com pesos %s: intervalo medio %.3f, maximo %.3f, desvio padrao %.3f, media quadratica %.3f\n", 
+				java.util.Arrays.toString(weights), weighted.getIntervalReport().getWeightedAverageInterval(), 
+				weighted.getIntervalReport().getWeightedMaximumInterval(), weighted.getIntervalReport().getWeightedStdDevOfIntervals(),
+				weighted.getIntervalReport().getWeightedQuadraticMeanOfIntervals());
+		System.out.printf(" - ociosidade media %.3f, maxima %.3f, frequencia media %.3f, desvio padrao %.3f\n", 
+				weighted.getIdlenessReport().getWeightedAverageIdleness(), weighted.getIdlenessReport().getWeightedMaxIdleness(),
+				weighted.getFrequencyReport().getWeightedAverageFrequency(), weighted.getFrequencyReport().getWeightedStdDevOfFrequencies());
+		
+		/* Devem ser iguais aos calculados diretamente das visitas
+		 */
+		double[] expected = bruteForceWeightedMetrics(4, 1, 10, list, weights);
+		double[] actual = {
+				weighted.getIntervalReport().getWeightedAverageInterval(), weighted.getIntervalReport().getWeightedMaximumInterval(),
+				weighted.getIntervalReport().getWeightedStdDevOfIntervals(), weighted.getIntervalReport().getWeightedQuadraticMeanOfIntervals(),
+				weighted.getIdlenessReport().getWeightedAverageIdleness(), weighted.getIdlenessReport().getWeightedMaxIdleness(),
+				weighted.getFrequencyReport().getWeightedAverageVisits(), weighted.getFrequencyReport().getWeightedAverageFrequency(),
+				weighted.getFrequencyReport().getWeightedStdDevOfFrequencies() };
+		
+		boolean equal = true;
+		for (int i = 0; i < expected.length; i++) {
+			equal = equal && Math.abs(expected[i] - actual[i]) < 1e-9;
+		}
+		System.out.println("Iguais ao calculo direto: " + equal);
+	}
+
+	/* Calcula as metricas ponderadas diretamente dos intervalos de cada no (incluindo o
+	 * do tempo inicial ate a primeira visita e o da ultima visita ate o fim)
+	 */
+	private static double[] bruteForceWeightedMetrics(int nodes, int initialTime, int finalTime, VisitsList list, double[] weights) {
+		List<List<Long>> intervals = new ArrayList<List<Long>>();
+		long[] lastVisit = new long[nodes];
+		int[] visits = new int[nodes];
+		
+		for (int v = 0; v < nodes; v++) {
+			intervals.add(new ArrayList<Long>());
+			lastVisit[v] = initialTime;
+		}
+		for (int i = 0; i < list.getNumVisits(); i++) {
+			long time = list.getTime(i);
+			int node = list.getNode(i);
+			if (time >= initialTime && time <= finalTime) {
+				intervals.get(node).add(time - lastVisit[node]);
+				lastVisit[node] = time;
+				visits[node] ++;
+			}
+		}
+		for (int v = 0; v < nodes; v++) {
+			intervals.get(v).add(finalTime + 1 - lastVisit[v]);
+		}
+		
+		double turns = finalTime - initialTime + 1;
+		double sumW = 0, sumW2 = 0, sum = 0, sumSquares = 0, max = 0;
+		double sumNodeW = 0, sumNodeW2 = 0, idleness = 0, maxIdleness = 0, sumVisits = 0, sumFreqs = 0;
+		
+		for (int v = 0; v < nodes; v++) {
+			double w = weights[v];
+			long sumIdlenesses = 0;
+			for (long interval : intervals.get(v)) {
+				sumW += w;
+				sumW2 += w * w;
+				sum += w * interval;
+				sumSquares += w * interval * interval;
+				max = Math.max(max, w * interval);
+				sumIdlenesses += interval * (interval + 1) / 2;   // ociosidades 1, 2, ..., intervalo
+				maxIdleness = Math.max(maxIdleness, w * interval);
+			}
+			sumNodeW += w;
+			sumNodeW2 += w * w;
+			idleness += w * sumIdlenesses / turns;
+			sumVisits += w * visits[v];
+			sumFreqs += w * visits[v] / turns;
+		}
+		
+		double mean = sum / sumW;
+		double meanFreq = sumFreqs / sumNodeW;
+		double deviations = 0, freqDeviations = 0;
+		for (int v = 0; v < nodes; v++) {
+			for (long interval : intervals.get(v)) {
+				deviations += weights[v] * (interval - mean) * (interval - mean);
+			}
+			freqDeviations += weights[v] * (visits[v] / turns - meanFreq) * (visits[v] / turns - meanFreq);
+		}
+		
+		// variancias ponderadas nao-enviesadas (como as variancias amostrais, com pesos 1.0)
+		return new double[] { mean, max, Math.sqrt(deviations / (sumW - sumW2 / sumW)), Math.sqrt(sumSquares / sumW),
+				idleness / sumNodeW, maxIdleness, sumVisits / sumNodeW, meanFreq,
+				Math.sqrt(freqDeviations / (sumNodeW - sumNodeW2 / sumNodeW)) };
 	}
 
 }
@@ -0,0 +1,59 @@
+package tests;
+
+import java.util.Random;
+
+import yaps.metrics.core.FrequencyMetricsReport;
+import yaps.metrics.core.IdlenessMetricsReport;
+import yaps.metrics.core.IntervalMetricsReport;
+import yaps.metrics.core.OnlineMetricsReport;
+import yaps.metrics.core.VisitsList;
+
+
+public class TestOnlineMetrics {
+
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		int numNodes = 20;
+		int startTime = 3;
+		
+		VisitsList list = new VisitsList();
+		OnlineMetricsReport online = new OnlineMetricsReport(numNodes, startTime);
+		
+		int time = startTime;
+		
+		for (int turn = 0; turn < 10; turn++) {
+			// visitas aleatorias ate o instante "time"
+			for (int i = 0; i < 30; i++) {
+				time += random.nextInt(2);
+				int node = random.nextInt(numNodes);
+				list.addVisit(time, node, 0);
+				online.onVisit(time, node, 0);
+			}
+			int endTime = time + random.nextInt(3);
+			
+			/* As metricas calculadas de forma incremental devem ser iguais as dos relatorios 
+			 */
+			IdlenessMetricsReport idleness = new IdlenessMetricsReport(numNodes, startTime, endTime, list);
+			IntervalMetricsReport intervals = new IntervalMetricsReport(numNodes, startTime, endTime, list);
+			FrequencyMetricsReport frequencies = new FrequencyMetricsReport(numNodes, startTime, endTime, list);
+			
+			System.out.printf("t=%d: idleness avg/max: %s/%s, intervals avg/max/stddev/rms: %s/%s/%s/%s, frequency avg/stddev: %s/%s\n", endTime,
+					same(idleness.getAverageIdleness(), online.getAverageIdleness(endTime)),
+					same(idleness.getMaxIdleness(), online.getMaxIdleness(endTime)),
+					same(intervals.getAverageInterval(), online.getAverageInterval(endTime)),
+					same(intervals.getMaximumInterval(), online.getMaximumInterval(endTime)),
+					same(intervals.getStdDevOfIntervals(), online.getStdDevOfIntervals(endTime)),
+					same(intervals.getQuadraticMeanOfIntervals(), online.getQuadraticMeanOfIntervals(endTime)),
+					same(frequencies.getAverageFrequency(), online.getAverageFrequency(endTime)),
+					same(frequencies.getStdDevOfFrequencies(), online.getStdDevOfFrequencies(endTime)));
+		}
+		
+		System.out.printf("Current idleness avg/max: %.3f / %d\n", online.getAverageInstantaneousIdleness(time), 
+				online.getMaxInstantaneousIdleness(time));
+	}
+
+	private static boolean same(double a, double b) {
+		return Math.abs(a - b) <= 1.0e-9 * Math.max(1.0d, Math.abs(a));
+	}
+	
+}
@@ -0,0 +1,88 @@
+package tests;
+
+import java.util.Random;
+
+import yaps.metrics.core.IdlenessMetricsReport;
+import yaps.metrics.core.IntervalMetricsReport;
+import yaps.metrics.core.QuantileMetricsReport;
+import yaps.metrics.core.VisitsList;
+
+
+public class TestQuantileMetrics {
+
+	public static void main(String[] args) {
+		Random random = new Random(3);
+		int numNodes = 30;
+		int startTime = 1;
+		int endTime = 20000;
+
+		VisitsList list = new VisitsList();
+		for (int time = startTime; time <= endTime; time++) {
+			if (random.nextInt(4) == 0) {
+				// alguns nos sao visitados bem menos que outros
+				int node = (random.nextInt(3) == 0) ? random.nextInt(numNodes) : random.nextInt(5);
+				list.addVisit(time, node, 0);
+			}
+		}
+
+		QuantileMetricsReport quantiles = new QuantileMetricsReport(numNodes, startTime, endTime, list);
+		IntervalMetricsReport intervals = new IntervalMetricsReport(numNodes, startTime, endTime, list);
+		IdlenessMetricsReport idleness = new IdlenessMetricsReport(numNodes, startTime, endTime, list);
+
+		System.out.println(quantiles);
+		System.out.printf("Max interval/idleness: %s/%s (exact: %s/%s)\n", quantiles.getIntervals().getMax(),
+				quantiles.getIdlenesses().getMax(), intervals.getMaximumInterval(), idleness.getMaxIdleness());
+
+		/* Os percentis devem ter erro relativo abaixo de 1% (em relacao aos exatos,
+		 * calculados a partir do histograma)
+		 */
+		int[] histogram = intervals.getIntervalsHistogram();
+
+		for (double p : new double[]{ 50, 95, 99, 99.9 }) {
+			long exactInterval = exactPercentile(histogram, p, false);
+			long exactIdleness = exactPercentile(histogram, p, true);
+			System.out.printf("p%s: interval %d (exact %d), idleness %d (exact %d)\n", p,
+					quantiles.getIntervalPercentile(p), exactInterval, quantiles.getIdlenessPercentile(p), exactIdleness);
+		}
+
+		/* Juntando duas execucoes, deve ser igual a um relatorio das duas juntas
+		 */
+		QuantileMetricsReport merged = new QuantileMetricsReport(numNodes, startTime, endTime, list);
+		merged.merge(quantiles);
+
+		System.out.printf("Merged: %d intervals (expected %d), p99 of node 0: %d (single: %d)\n",
+				merged.getIntervals().getCount(), 2 * quantiles.getIntervals().getCount(),
+				merged.getIntervals(0).getPercentile(99), quantiles.getIntervals(0).getPercentile(99));
+	}
+
+	// the value in position ceil(p/100 * count) of the intervals (or of the
+	// idlenesses 1, 2, ..., I of each interval I) in increasing order
+	private static long exactPercentile(int[] histogram, double p, boolean idlenesses) {
+		long[] counts = new long[histogram.length];
+		long total = 0;
+
+		for (int interval = 0; interval < histogram.length; interval++) {
+			if (idlenesses) {
+				// each interval I has one idleness of each value from 1 to I
+				for (int value = 1; value <= interval; value++) {
+					counts[value] += histogram[interval];
+				}
+			} else {
+				counts[interval] += histogram[interval];
+			}
+		}
+		for (long c : counts) {
+			total += c;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(p / 100.0d * total));
+		long accumulated = 0;
+		int value = 0;
+		while (accumulated + counts[value] < rank) {
+			accumulated += counts[value];
+			value ++;
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,83 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+
+import yaps.agent_library.core.SharedMemoryAgentHost;
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphDataRepr;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.local_simulator.LocalSimulatorConnector;
+import yaps.local_simulator.SharedMemoryConnector;
+import yaps.metrics.core.VisitListener;
+import yaps.metrics.core.VisitsList;
+
+
+/**
+ * Runs the simulator in this process and the agents in another process (started by
+ * this test with the argument "host"), exchanging perceptions and actions through a
+ * memory-mapped file.
+ */
+public class TestSharedMemory {
+	static final int NUM_AGENTS = 4;
+	static final int TURNS = 20000;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Graph graph = GraphFileUtil.read("maps/map_grid.xml", GraphFileFormat.SIMPATROL, GraphDataRepr.CSR);
+
+		if (args.length == 2 && args[0].equals("host")) {
+			SharedMemoryAgentHost host = new SharedMemoryAgentHost(new File(args[1]), graph);
+			for (int a = 0; a < NUM_AGENTS; a++) {
+				host.addAgent(a, new TestLocalSimulator.GreedyAgent());
+			}
+			host.run();
+			return;
+		}
+
+		File file = File.createTempFile("yaps-agents-", ".shm");
+		file.deleteOnExit();
+
+		/* Os agentes rodam em outro processo (JVM), que espera o arquivo ficar pronto
+		 */
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				TestSharedMemory.class.getName(), "host", file.getPath()).inheritIO().start();
+
+		SharedMemoryConnector connector = new SharedMemoryConnector(graph, TURNS, file);
+		for (int a = 0; a < NUM_AGENTS; a++) {
+			connector.addRemoteAgent(a * graph.getNumNodes() / NUM_AGENTS);
+		}
+		// mede a partir da primeira visita depois do tempo 0 (sem contar o inicio da JVM dos agentes)
+		final long[] firstTurn = new long[2];
+		connector.addVisitListener(new VisitListener() {
+			public void onVisit(long time, int node, int agent) {
+				if (time > 0 && firstTurn[0] == 0) {
+					firstTurn[0] = time;
+					firstTurn[1] = System.nanoTime();
+				}
+			}
+		});
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+		double seconds = (System.nanoTime() - firstTurn[1]) / 1.0e9;
+		long measuredTurns = TURNS - firstTurn[0];
+		System.out.printf("Agent process exit code: %d\n", process.waitFor());
+
+		/* As visitas devem ser as mesmas dos agentes rodando no simulador local
+		 */
+		LocalSimulatorConnector local = new LocalSimulatorConnector(graph, TURNS);
+		for (int a = 0; a < NUM_AGENTS; a++) {
+			local.addAgent(new TestLocalSimulator.GreedyAgent(), a * graph.getNumNodes() / NUM_AGENTS);
+		}
+		local.startSimulation();
+		local.waitEndOfSimulation();
+
+		VisitsList visits = connector.getVisitsList();
+		System.out.printf("%d visits, same visits of the local agents: %s\n", visits.getNumVisits(),
+				TestLocalSimulator.sameVisits(local.getVisitsList(), visits));
+
+		System.out.printf("%d turns in %.3f s: %.1f us per turn\n", measuredTurns, seconds, seconds * 1.0e6 / measuredTurns);
+	}
+
+}
@@ -0,0 +1,128 @@
+package tests;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import yaps.agent_library.core.SocketAgentClient;
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphDataRepr;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.local_simulator.LocalSimulatorConnector;
+import yaps.local_simulator.SocketConnector;
+import yaps.metrics.core.VisitListener;
+import yaps.metrics.core.VisitsList;
+
+
+/**
+ * Runs the simulator with agents connected by TCP in the loopback interface.
+ */
+public class TestSocketAgents {
+
+	public static void main(String[] args) throws Exception {
+		Graph graph = GraphFileUtil.read("maps/map_grid.xml", GraphFileFormat.SIMPATROL, GraphDataRepr.CSR);
+		InetSocketAddress loopback = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+		/* Agentes gulosos em uma unica conexao: as visitas devem ser as mesmas do simulador local
+		 */
+		int turns = 20000;
+		SocketConnector connector = new SocketConnector(graph, turns, loopback);
+		SocketAgentClient client = new SocketAgentClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), connector.getPort()), graph);
+		for (int a = 0; a < 4; a++) {
+			connector.addRemoteAgent(a * graph.getNumNodes() / 4);
+			client.addAgent(a, new TestLocalSimulator.GreedyAgent());
+		}
+		Thread clientThread = runInThread(client);
+
+		long start = System.nanoTime();
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+		double seconds = (System.nanoTime() - start) / 1.0e9;
+		clientThread.join();
+
+		VisitsList local = TestThreadedAgents.run(new LocalSimulatorConnector(graph, turns), graph, 4, true);
+		System.out.printf("Greedy agents in one connection, same visits: %s\n",
+				TestLocalSimulator.sameVisits(local, connector.getVisitsList()));
+		System.out.printf("%d turns in %.2f s: %.1f us per turn\n", turns, seconds, seconds * 1.0e6 / turns);
+
+		/* Milhares de conexoes (uma por agente), atendidas pelo simulador em uma unica thread; do
+		 * lado dos clientes, poucas threads atendem todas as conexoes, uma de cada vez
+		 */
+		int numAgents = 2000;
+		int clientThreads = 4;
+		turns = 100;
+		connector = new SocketConnector(graph, turns, loopback);
+		final SocketAgentClient[] clients = new SocketAgentClient[numAgents];
+		for (int a = 0; a < numAgents; a++) {
+			connector.addRemoteAgent(a * graph.getNumNodes() / numAgents);
+			clients[a] = new SocketAgentClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), connector.getPort()), graph);
+			clients[a].addAgent(a, new TestLocalSimulator.RandomAgent(a));
+		}
+
+		Thread[] threads = new Thread[clientThreads];
+		for (int t = 0; t < clientThreads; t++) {
+			final int first = t * numAgents / clientThreads;
+			final int end = (t + 1) * numAgents / clientThreads;
+			threads[t] = new Thread() {
+				public void run() {
+					try {
+						for (int a = first; a < end; a++) {
+							clients[a].connect();
+						}
+						boolean running = true;
+						while (running) {
+							for (int a = first; a < end; a++) {
+								running = clients[a].step();
+							}
+						}
+						for (int a = first; a < end; a++) {
+							clients[a].close();
+						}
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			threads[t].start();
+		}
+
+		// mede a partir da primeira visita depois do tempo 0 (sem contar as conexoes)
+		final long[] firstTurn = new long[2];
+		connector.addVisitListener(new VisitListener() {
+			public void onVisit(long time, int node, int agent) {
+				if (time > 0 && firstTurn[0] == 0) {
+					firstTurn[0] = time;
+					firstTurn[1] = System.nanoTime();
+				}
+			}
+		});
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+		seconds = (System.nanoTime() - firstTurn[1]) / 1.0e9;
+		long measuredTurns = turns - firstTurn[0];
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		local = TestThreadedAgents.run(new LocalSimulatorConnector(graph, turns), graph, numAgents, false);
+		System.out.printf("%d agents in %d connections, same visits: %s\n", numAgents, numAgents,
+				TestLocalSimulator.sameVisits(local, connector.getVisitsList()));
+		System.out.printf("%d turns in %.2f s: %.2f ms per turn\n", measuredTurns, seconds, seconds * 1.0e3 / measuredTurns);
+	}
+
+	static Thread runInThread(final SocketAgentClient client) {
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					client.run();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+}
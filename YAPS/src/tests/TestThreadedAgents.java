@@ -0,0 +1,91 @@
+package tests;
+
+import java.io.IOException;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphDataRepr;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.local_simulator.Action;
+import yaps.local_simulator.LocalSimulatorConnector;
+import yaps.local_simulator.ThreadedAgentRuntime;
+import yaps.local_simulator.ThreadedSimulatorConnector;
+import yaps.metrics.core.VisitsList;
+
+
+public class TestThreadedAgents {
+
+	public static void main(String[] args) throws IOException {
+		Graph graph = GraphFileUtil.read("maps/map_grid.xml", GraphFileFormat.SIMPATROL, GraphDataRepr.CSR);
+		System.out.println("Virtual threads supported: " + ThreadedAgentRuntime.isVirtualThreadsSupported());
+
+		/* Com uma thread por agente, as visitas devem ser as mesmas do simulador local
+		 */
+		VisitsList direct = run(new LocalSimulatorConnector(graph, 2000), graph, 4, true);
+		VisitsList threaded = run(new ThreadedSimulatorConnector(graph, 2000), graph, 4, true);
+		System.out.printf("Greedy agents, same visits: %s\n", TestLocalSimulator.sameVisits(direct, threaded));
+
+		// custo das trocas de contexto, comparado com as chamadas diretas aos agentes
+		int numAgents = 10000;
+		int turns = 30;
+		long start = System.nanoTime();
+		direct = run(new LocalSimulatorConnector(graph, turns), graph, numAgents, false);
+		double directSeconds = (System.nanoTime() - start) / 1.0e9;
+
+		start = System.nanoTime();
+		threaded = run(new ThreadedSimulatorConnector(graph, turns), graph, numAgents, false);
+		double threadedSeconds = (System.nanoTime() - start) / 1.0e9;
+
+		System.out.printf("%d random agents, same visits: %s\n", numAgents, TestLocalSimulator.sameVisits(direct, threaded));
+		System.out.printf("Direct calls:  %.2f million agent-turns per second\n", numAgents * turns / directSeconds / 1.0e6);
+		System.out.printf("Agent threads: %.2f million agent-turns per second (%.2f us per decision)\n",
+				numAgents * turns / threadedSeconds / 1.0e6, threadedSeconds * 1.0e6 / (numAgents * turns));
+
+		/* Agentes com codigo bloqueante (ex.: esperando um processo remoto) decidem ao mesmo tempo
+		 */
+		numAgents = 2000;
+		turns = 20;
+		ThreadedSimulatorConnector connector = new ThreadedSimulatorConnector(graph, turns);
+		for (int a = 0; a < numAgents; a++) {
+			connector.addAgent(new SleepingAgent(), a % graph.getNumNodes());
+		}
+		start = System.nanoTime();
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+		double seconds = (System.nanoTime() - start) / 1.0e9;
+
+		System.out.printf("%d blocking agents, %d turns: %.2f s (sequential: at least %.1f s)\n", numAgents, turns,
+				seconds, numAgents * turns * SleepingAgent.SLEEP_MILLIS / 1000.0);
+	}
+
+	static VisitsList run(LocalSimulatorConnector connector, Graph graph, int numAgents, boolean greedy) {
+		for (int a = 0; a < numAgents; a++) {
+			Agent agent = greedy ? new TestLocalSimulator.GreedyAgent() : new TestLocalSimulator.RandomAgent(a);
+			connector.addAgent(agent, a * graph.getNumNodes() / numAgents);
+		}
+		connector.startSimulation();
+		connector.waitEndOfSimulation();
+		return connector.getVisitsList();
+	}
+
+	/**
+	 * Waits some time before each decision, then goes to the first neighbor.
+	 */
+	static class SleepingAgent extends Agent {
+		static final int SLEEP_MILLIS = 1;
+
+		@Override
+		public Action decide(SelfPerception self, GraphPerception perception) {
+			try {
+				Thread.sleep(SLEEP_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return Action.goTo(perception.getGraph().getOutTarget(self.getNode(), 0));
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import yaps.metrics.core.IntervalMetricsReport;
+import yaps.metrics.core.OnlineMetricsReport;
+import yaps.metrics.core.VisitLogReader;
+import yaps.metrics.core.VisitLogWriter;
+import yaps.metrics.core.VisitsList;
+
+
+public class TestVisitLog {
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(4);
+		int numNodes = 200;
+		int numAgents = 5;
+		int endTime = 50000;
+
+		File file = File.createTempFile("visits-", ".log");
+		file.deleteOnExit();
+
+		VisitsList list = new VisitsList();
+		long textBytes = 0;
+
+		try (VisitLogWriter writer = new VisitLogWriter(file)) {
+			for (int time = 0; time <= endTime; time++) {
+				for (int agent = 0; agent < numAgents; agent++) {
+					if (random.nextInt(3) == 0) {
+						int node = random.nextInt(numNodes);
+						writer.onVisit(time, node, agent);
+						list.addVisit(time, node, agent);
+						textBytes += String.format("(t=%d n=%d a=%d)\n", time, node, agent).length();  // as in Visit.toString()
+					}
+				}
+			}
+		}
+
+		VisitLogReader reader = new VisitLogReader(file);
+
+		System.out.printf("%d visits, %d bytes (%.1f bytes/visit), %.1fx smaller than text\n", reader.getNumVisits(),
+				file.length(), (double)file.length() / reader.getNumVisits(), (double)textBytes / file.length());
+
+		/* As visitas lidas devem ser iguais as escritas (todas e em alguns periodos)
+		 */
+		System.out.println("All visits equal: " + sameVisits(reader.toVisitsList(0, endTime), list));
+
+		for (int i = 0; i < 3; i++) {
+			int from = random.nextInt(endTime);
+			int to = from + random.nextInt(2000);
+			System.out.printf("Visits from %d to %d equal: %s\n", from, to,
+					sameVisits(reader.toVisitsList(from, to), list.filterByTime(from, to)));
+		}
+
+		/* Metricas calculadas diretamente do arquivo
+		 */
+		OnlineMetricsReport online = new OnlineMetricsReport(numNodes, 0);
+		reader.read(online);
+
+		IntervalMetricsReport intervals = new IntervalMetricsReport(numNodes, 0, endTime, list);
+		System.out.printf("Average interval: %s (from the list: %s)\n", online.getAverageInterval(endTime),
+				intervals.getAverageInterval());
+	}
+
+	private static boolean sameVisits(VisitsList a, VisitsList b) {
+		if (a.getNumVisits() != b.getNumVisits()) {
+			return false;
+		}
+		for (int i = 0; i < a.getNumVisits(); i++) {
+			if (a.getTime(i) != b.getTime(i) || a.getNode(i) != b.getNode(i) || a.getAgent(i) != b.getAgent(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
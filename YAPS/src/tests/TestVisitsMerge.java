@@ -0,0 +1,74 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import yaps.metrics.core.VisitsList;
+
+
+public class TestVisitsMerge {
+
+	public static void main(String[] args) {
+		Random random = new Random(5);
+		int numAgents = 100;
+		int numNodes = 1000;
+
+		// uma lista de visitas por agente (cada uma ordenada por tempo)
+		List<VisitsList> agentLists = new ArrayList<VisitsList>();
+		VisitsList ordered = new VisitsList();
+		VisitsList unsorted = new VisitsList();
+
+		for (int agent = 0; agent < numAgents; agent++) {
+			VisitsList agentVisits = new VisitsList();
+			int time = random.nextInt(10);
+			for (int i = 0; i < 500; i++) {
+				time += 1 + random.nextInt(20);
+				agentVisits.addVisit(time, random.nextInt(numNodes), agent);
+			}
+			agentLists.add(agentVisits);
+		}
+
+		/* As tres formas devem dar a mesma lista: juntando com merge(), com
+		 * addVisitUnsorted() (ordenando uma vez) e com addVisit() (inserindo
+		 * no meio) para cada agente
+		 */
+		long start = System.nanoTime();
+		VisitsList merged = VisitsList.merge(agentLists);
+		System.out.printf("merge: %d visits in %.1f ms\n", merged.getNumVisits(), (System.nanoTime() - start) / 1.0e6);
+
+		start = System.nanoTime();
+		for (VisitsList agentVisits : agentLists) {
+			for (int i = 0; i < agentVisits.getNumVisits(); i++) {
+				unsorted.addVisitUnsorted(agentVisits.getTime(i), agentVisits.getNode(i), agentVisits.getAgent(i));
+			}
+		}
+		unsorted.getLastTime();  // sorts
+		System.out.printf("addVisitUnsorted: %d visits in %.1f ms\n", unsorted.getNumVisits(), (System.nanoTime() - start) / 1.0e6);
+
+		start = System.nanoTime();
+		for (VisitsList agentVisits : agentLists) {
+			for (int i = 0; i < agentVisits.getNumVisits(); i++) {
+				ordered.addVisit((int)agentVisits.getTime(i), agentVisits.getNode(i), agentVisits.getAgent(i));
+			}
+		}
+		System.out.printf("addVisit: %d visits in %.1f ms\n", ordered.getNumVisits(), (System.nanoTime() - start) / 1.0e6);
+
+		System.out.println("merge == addVisit ? " + sameVisits(merged, ordered));
+		System.out.println("addVisitUnsorted == addVisit ? " + sameVisits(unsorted, ordered));
+		System.out.println("Visits of agent 7 equal? " + sameVisits(merged.filterByAgent(7), agentLists.get(7)));
+	}
+
+	private static boolean sameVisits(VisitsList a, VisitsList b) {
+		if (a.getNumVisits() != b.getNumVisits()) {
+			return false;
+		}
+		for (int i = 0; i < a.getNumVisits(); i++) {
+			if (a.getTime(i) != b.getTime(i) || a.getNode(i) != b.getNode(i) || a.getAgent(i) != b.getAgent(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,56 @@
+package tests;
+
+import java.util.List;
+import java.util.Random;
+
+import yaps.metrics.core.IdlenessMetricsReport;
+import yaps.metrics.core.IntervalMetricsReport;
+import yaps.metrics.core.MetricsSnapshot;
+import yaps.metrics.core.VisitsList;
+import yaps.metrics.core.WindowMetricsReport;
+
+
+public class TestWindowMetrics {
+
+	public static void main(String[] args) {
+		Random random = new Random(2);
+		int numNodes = 15;
+		int startTime = 2;
+		int endTime = 300;
+		
+		VisitsList list = new VisitsList();
+		for (int time = startTime; time <= endTime; time++) {
+			for (int i = random.nextInt(3); i > 0; i--) {
+				list.addVisit(time, random.nextInt(numNodes), 0);
+			}
+		}
+		
+		for (int windowSize : new int[]{ 40, 0 }) {
+			WindowMetricsReport window = new WindowMetricsReport(numNodes, startTime, endTime, windowSize, 25, list);
+			List<MetricsSnapshot> snapshots = window.getSnapshots();
+			boolean allEqual = true;
+			
+			/* Cada snapshot deve ser igual aos relatorios calculados no mesmo periodo 
+			 */
+			for (MetricsSnapshot snap : snapshots) {
+				IdlenessMetricsReport idleness = new IdlenessMetricsReport(numNodes, (int)snap.startTime, (int)snap.endTime, list);
+				IntervalMetricsReport intervals = new IntervalMetricsReport(numNodes, (int)snap.startTime, (int)snap.endTime, list);
+				
+				allEqual &= same(idleness.getAverageIdleness(), snap.averageIdleness)
+						&& same(idleness.getMaxIdleness(), snap.maxIdleness)
+						&& same(intervals.getAverageInterval(), snap.averageInterval)
+						&& same(intervals.getMaximumInterval(), snap.maximumInterval)
+						&& same(intervals.getStdDevOfIntervals(), snap.stdDevOfIntervals)
+						&& same(intervals.getQuadraticMeanOfIntervals(), snap.quadraticMeanOfIntervals);
+			}
+			
+			System.out.printf("Window %d: %d snapshots, equal to the reports: %s\n", windowSize, snapshots.size(), allEqual);
+			System.out.println(" - last: " + snapshots.get(snapshots.size() - 1));
+		}
+	}
+
+	private static boolean same(double a, double b) {
+		return Math.abs(a - b) <= 1.0e-9 * Math.max(1.0d, Math.abs(a));
+	}
+	
+}
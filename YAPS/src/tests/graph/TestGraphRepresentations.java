@@ -0,0 +1,58 @@
+package tests.graph;
+
+import java.io.IOException;
+
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphDataRepr;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.graph_library.IntEdgeConsumer;
+
+
+public class TestGraphRepresentations {
+
+	public static void main(String[] args) throws IOException {
+		Graph lists = GraphFileUtil.readAdjacencyList("src/tests/graph/grafo-11.txt", GraphDataRepr.LISTS);
+		Graph csr = GraphFileUtil.readAdjacencyList("src/tests/graph/grafo-11.txt", GraphDataRepr.CSR);
+
+		/* Os grafos devem ser iguais
+		 */
+		System.out.println("LISTS == CSR ? " + lists.equals(csr));
+		System.out.println(csr);
+
+		Graph matrix = GraphFileUtil.readAdjacencyList("src/tests/graph/grafo-11.txt", GraphDataRepr.MATRIX);
+		
+		/* Todos devem ter os mesmos vizinhos (em qualquer ordem) e a mesma soma dos comprimentos
+		 */
+		for (Graph g : new Graph[]{ lists, matrix, csr }) {
+			final int[] sum = new int[1];
+			for (int v = 0; v < g.getNumNodes(); v++) {
+				g.forEachOutEdge(v, new IntEdgeConsumer() {
+					public void accept(int source, int target, int length, int edgeId) {
+						sum[0] += length;
+					}
+				});
+			}
+			System.out.printf("%s: degree(n4) = %d, neighbors(n4) = ", g.getDataRepr(), g.getOutDegree(4));
+			for (int i = 0; i < g.getOutDegree(4); i++) {
+				System.out.printf("n%d/%d ", g.getOutTarget(4, i), g.getOutLength(4, i));
+			}
+			System.out.println(", sum of lengths = " + sum[0]);
+		}
+
+		String[] maps = { "map_cicles_corridor", "map_city_traffic", "map_grid",
+				"map_islands", "map_random_directed_1", "map_random_directed_2" };
+
+		for (String mapName : maps) {
+			Graph graph = GraphFileUtil.read("maps/" + mapName + ".xml", GraphFileFormat.SIMPATROL);
+			Graph graphCsr = GraphFileUtil.read("maps/" + mapName + ".xml", GraphFileFormat.SIMPATROL, GraphDataRepr.CSR);
+
+			System.out.printf("%s: %d nodes, equal: %s, symmetrical: %s/%s\n", mapName, graph.getNumNodes(),
+					graph.equals(graphCsr), graph.isSymmetrical(), graphCsr.isSymmetrical());
+
+			graphCsr.changeRepresentation(GraphDataRepr.LISTS);
+			System.out.printf("%s: back to LISTS, equal: %s\n", mapName, graph.equals(graphCsr));
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package tests.graph;
+
+import java.io.IOException;
+
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.graph_library.algorithms.AllShortestPaths;
+import yaps.graph_library.algorithms.ShortestPathOracle;
+import yaps.graph_library.algorithms.ShortestPaths;
+
+
+public class TestShortestPaths {
+
+	public static void main(String[] args) throws IOException {
+		String[] maps = { "map_cicles_corridor", "map_city_traffic", "map_grid",
+				"map_islands", "map_random_directed_1", "map_random_directed_2" };
+
+		for (String mapName : maps) {
+			Graph graph = GraphFileUtil.read("maps/" + mapName + ".xml", GraphFileFormat.SIMPATROL);
+
+			AllShortestPaths floyd = new AllShortestPaths(graph);
+			floyd.computeByFloydWarshall();
+
+			AllShortestPaths dijkstra = new AllShortestPaths(graph);
+			dijkstra.computeByDijkstra();
+
+			// pequeno o bastante para guardar so 5 linhas
+			ShortestPathOracle oracle = new ShortestPathOracle(graph, 5 * 12 * graph.getNumNodes());
+
+			/* Todos devem dar exatamente as mesmas respostas
+			 */
+			System.out.printf("%s: dijkstra equal: %s, oracle equal: %s, oracle cached rows: %d\n", mapName,
+					sameAnswers(graph, floyd, dijkstra), sameAnswers(graph, floyd, oracle), oracle.getCachedRows());
+		}
+	}
+
+	static boolean sameAnswers(Graph graph, ShortestPaths a, ShortestPaths b) {
+		int n = graph.getNumNodes();
+
+		for (int source = 0; source < n; source++) {
+			for (int destiny = 0; destiny < n; destiny++) {
+				if (a.getDistance(source, destiny) != b.getDistance(source, destiny)
+						|| a.existsPath(source, destiny) != b.existsPath(source, destiny)) {
+					return false;
+				}
+				if (source != destiny && a.existsPath(source, destiny)
+						&& (a.getSourceSuccessor(source, destiny) != b.getSourceSuccessor(source, destiny)
+						|| a.getDestinyPredecessor(source, destiny) != b.getDestinyPredecessor(source, destiny)
+						|| !a.getPath(source, destiny).equals(b.getPath(source, destiny)))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,62 @@
+package tests.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import yaps.graph_library.Graph;
+import yaps.graph_library.GraphFileFormat;
+import yaps.graph_library.GraphFileUtil;
+import yaps.graph_library.algorithms.AllShortestPaths;
+
+
+public class TestShortestPathsCache {
+
+	public static void main(String[] args) throws IOException {
+		String[] maps = { "map_cicles_corridor", "map_city_traffic", "map_random_directed_1" };
+		File directory = Files.createTempDirectory("asp-test").toFile();
+
+		for (String mapName : maps) {
+			Graph graph = GraphFileUtil.read("maps/" + mapName + ".xml", GraphFileFormat.SIMPATROL);
+
+			AllShortestPaths computed = new AllShortestPaths(graph);
+			computed.compute();
+
+			/* Salva e carrega (mapeado em memoria): as respostas devem ser as mesmas
+			 */
+			File file = new File(directory, mapName + ".bin");
+			computed.save(file);
+
+			AllShortestPaths loaded = new AllShortestPaths(graph);
+			loaded.load(file);
+
+			/* Nao deve carregar o arquivo se o grafo mudou
+			 */
+			Graph changed = GraphFileUtil.read("maps/" + mapName + ".xml", GraphFileFormat.SIMPATROL);
+			changed.addEdge(0, changed.getNumNodes() - 1, 1, true);
+
+			boolean rejected = false;
+			try {
+				new AllShortestPaths(changed).load(file);
+			} catch (IOException e) {
+				rejected = true;
+			}
+
+			/* Na primeira vez, calcula e cria o arquivo; na segunda, carrega dele
+			 */
+			boolean firstCached = new AllShortestPaths(graph).computeCached(directory);
+			AllShortestPaths cached = new AllShortestPaths(graph);
+			boolean secondCached = cached.computeCached(directory);
+
+			System.out.printf("%s: loaded equal: %s, rejected after change: %s, cached: %s/%s (expected false/true), cached equal: %s\n",
+					mapName, TestShortestPaths.sameAnswers(graph, computed, loaded), rejected,
+					firstCached, secondCached, TestShortestPaths.sameAnswers(graph, computed, cached));
+		}
+
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+}
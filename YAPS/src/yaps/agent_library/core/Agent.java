@@ -1,8 +1,43 @@
 package yaps.agent_library.core;
 
+import yaps.local_simulator.Action;
+import yaps.local_simulator.ActionBuffer;
 
-public class Agent {
 
+/**
+ * An agent of the patrolling simulation. Each time the agent is in a node (in the
+ * beginning of the simulation and after arriving in a node), the simulator calls
+ * decide() to get its next action.
+ * <br><br>
+ * The subclasses must override one of the decide() methods: the one that returns an
+ * Action or, to avoid creating objects, the one that writes in an ActionBuffer.
+ * <br><br>
+ * The perceptions given to decide() are the same objects in all the calls (updated by
+ * the simulator), so they should not be kept by the agent.
+ *
+ * @author Pablo A. Sampaio
+ */
+public abstract class Agent {
 
+	/**
+	 * Returns the next action of the agent, or null to stay in the current node
+	 * (decide() will be called again in the next turn). It is only called by the default
+	 * implementation of decide(SelfPerception, GraphPerception, ActionBuffer), so agents
+	 * that override that method don't need to override this one.
+	 */
+	public Action decide(SelfPerception self, GraphPerception graph) {
+		throw new UnsupportedOperationException("The agent must override one of the decide() methods");
+	}
+
+	/**
+	 * Writes the next action of the agent in its position of the buffer (given by the 
+	 * identifier of the agent). This is the method called by the simulator. By default,
+	 * it calls decide() and copies the action returned, but the agents may override it
+	 * to write the action directly (e.g. with actions.goTo()), without creating objects.
+	 * If nothing is written, the agent stays in the node.
+	 */
+	public void decide(SelfPerception self, GraphPerception graph, ActionBuffer actions) {
+		actions.set(self.getIdentifier(), decide(self, graph));
+	}
 
 }
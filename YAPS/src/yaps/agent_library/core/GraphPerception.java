@@ -1,7 +1,48 @@
 package yaps.agent_library.core;
 
+import yaps.graph_library.Graph;
 
+
+/**
+ * The perception of the graph: its topology and the time of the last visit to each
+ * node (by any agent). The same object is shared by all the agents and is updated by
+ * the simulator, so the agents must not change the graph.
+ *
+ * @author Pablo A. Sampaio
+ */
 public class GraphPerception implements Perception {
+	private final Graph graph;
+	private final long[] lastVisits;
+
+	/**
+	 * The array of the times of the last visits is not copied: it is updated by the
+	 * simulator.
+	 */
+	public GraphPerception(Graph graph, long[] lastVisitTimes) {
+		this.graph = graph;
+		this.lastVisits = lastVisitTimes;
+	}
+
+	public Graph getGraph() {
+		return graph;
+	}
+
+	public int getNumNodes() {
+		return lastVisits.length;
+	}
+
+	/**
+	 * Time of the last visit to the node, or the initial time (0) if it was not visited.
+	 */
+	public long getLastVisitTime(int node) {
+		return lastVisits[node];
+	}
+
+	/**
+	 * Instantaneous idleness of the node at the given time (see IdlenessMetricsReport).
+	 */
+	public long getIdleness(int node, long time) {
+		return time - lastVisits[node] + 1;
+	}
 
-	
 }
@@ -1,13 +1,55 @@
 package yaps.agent_library.core;
 
-public class SelfPerception {
+
+/**
+ * The perception of an agent about itself: its identifier, the current time and the
+ * current and the previous nodes. The simulator keeps one object for each agent and
+ * updates it before each call to Agent.decide().
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SelfPerception implements Perception {
+	private final int identifier;
+	private long time;
+	private int node;
+	private int previousNode;
+
+	public SelfPerception(int identifier) {
+		this.identifier = identifier;
+		this.previousNode = -1;
+	}
+
+	/**
+	 * Called by the simulator.
+	 */
+	public void update(long time, int node, int previousNode) {
+		this.time = time;
+		this.node = node;
+		this.previousNode = previousNode;
+	}
+
+	public int getIdentifier() {
+		return identifier;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public int getNode() {
+		return node;
+	}
 
 	/**
-	 * @param args
+	 * The node visited before the current one, or -1 if the agent is still
+	 * in its start node.
 	 */
-	public static void main(String[] args) {
-		// TODO Auto-generated method stub
+	public int getPreviousNode() {
+		return previousNode;
+	}
 
+	public String toString() {
+		return "{agent " + identifier + ", t=" + time + ", node " + node + ", previous " + previousNode + "}";
 	}
 
 }
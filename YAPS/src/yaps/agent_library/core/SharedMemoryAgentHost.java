@@ -0,0 +1,172 @@
+package yaps.agent_library.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import yaps.graph_library.Graph;
+import yaps.local_simulator.ActionBuffer;
+import yaps.local_simulator.SharedMemoryLayout;
+
+
+/**
+ * Runs agents in a process different from the simulator, in the same machine. The
+ * perceptions and the actions are exchanged through the memory-mapped file created by
+ * the simulator (see SharedMemoryConnector and SharedMemoryLayout), without copying
+ * data through sockets.
+ * <br><br>
+ * The agents are added with their identifiers in the simulation, then run() handles
+ * the requests of the simulator until the end of the simulation. The process must load
+ * the same graph used by the simulator.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SharedMemoryAgentHost {
+	private static final int BUSY_SPINS = 100;
+
+	private final File file;
+	private final Graph graph;
+
+	private List<Integer> identifiers;
+	private List<Agent> agents;
+
+	// used while running
+	private MappedByteBuffer buffer;
+	private long[] lastVisits;
+	private long lastVisitsTime;    // time of the perception copied to lastVisits
+	private GraphPerception graphPerception;
+	private ActionBuffer actions;
+
+
+	public SharedMemoryAgentHost(File file, Graph graph) {
+		this.file = file;
+		this.graph = graph;
+		this.identifiers = new ArrayList<Integer>();
+		this.agents = new ArrayList<Agent>();
+	}
+
+	/**
+	 * Adds the agent that has the given identifier in the simulation.
+	 */
+	public void addAgent(int identifier, Agent agent) {
+		identifiers.add(identifier);
+		agents.add(agent);
+	}
+
+	/**
+	 * Waits the simulation to start (i.e. the file to be ready), then runs the decisions
+	 * of the agents until the end of the simulation. If an agent fails, the failure is
+	 * reported to the simulator and the exception is thrown.
+	 */
+	public void run() throws IOException, InterruptedException {
+		buffer = waitFile();
+
+		int numAgents = buffer.getInt(SharedMemoryLayout.NUM_AGENTS_OFFSET);
+		int numNodes = buffer.getInt(SharedMemoryLayout.NUM_NODES_OFFSET);
+		if (numNodes != graph.getNumNodes() || buffer.getLong(SharedMemoryLayout.GRAPH_HASH_OFFSET) != graph.contentHash()) {
+			throw new IllegalArgumentException("The graph is different from the graph of the simulator");
+		}
+
+		int size = agents.size();
+		int[] slots = new int[size];
+		long[] sequences = new long[size];
+		SelfPerception[] selfPerceptions = new SelfPerception[size];
+		for (int i = 0; i < size; i++) {
+			int id = identifiers.get(i);
+			if (id < 0 || id >= numAgents) {
+				throw new IllegalArgumentException("Invalid identifier of agent: " + id);
+			}
+			slots[i] = SharedMemoryLayout.slotOffset(numNodes, id);
+			selfPerceptions[i] = new SelfPerception(id);
+		}
+
+		lastVisits = new long[numNodes];
+		lastVisitsTime = -1;
+		graphPerception = new GraphPerception(graph, lastVisits);
+		actions = new ActionBuffer(numAgents);
+
+		int idleSpins = 0;
+		while (true) {
+			boolean handled = false;
+
+			for (int i = 0; i < size; i++) {
+				long sequence = SharedMemoryLayout.getSequence(buffer, slots[i] + SharedMemoryLayout.REQUEST_SEQUENCE);
+				if (sequence != sequences[i]) {
+					sequences[i] = sequence;
+					handled = true;
+					decide(slots[i], sequence, agents.get(i), selfPerceptions[i]);
+				}
+			}
+
+			if (handled) {
+				idleSpins = 0;
+			} else if (++idleSpins >= BUSY_SPINS) {
+				if (SharedMemoryLayout.getSequence(buffer, SharedMemoryLayout.STATUS_OFFSET) == SharedMemoryLayout.STATUS_STOPPED) {
+					return;
+				}
+				Thread.yield();
+			}
+		}
+	}
+
+	private void decide(int slot, long sequence, Agent agent, SelfPerception self) {
+		long time = buffer.getLong(slot + SharedMemoryLayout.REQUEST_TIME);
+		self.update(time, buffer.getInt(slot + SharedMemoryLayout.REQUEST_NODE),
+				buffer.getInt(slot + SharedMemoryLayout.REQUEST_PREVIOUS_NODE));
+
+		// the times of the last visits are the same for all the requests of a turn
+		if (time != lastVisitsTime) {
+			for (int v = 0; v < lastVisits.length; v++) {
+				lastVisits[v] = buffer.getLong(SharedMemoryLayout.LAST_VISITS_OFFSET + 8 * v);
+			}
+			lastVisitsTime = time;
+		}
+
+		int id = self.getIdentifier();
+		actions.stay(id);
+		try {
+			agent.decide(self, graphPerception, actions);
+		} catch (RuntimeException e) {
+			// the other agents of this process will not respond
+			SharedMemoryLayout.putSequence(buffer, SharedMemoryLayout.FAILED_AGENT_OFFSET, id + 1);
+			buffer.putInt(slot + SharedMemoryLayout.RESPONSE_TYPE, SharedMemoryLayout.TYPE_FAILURE);
+			SharedMemoryLayout.putSequence(buffer, slot + SharedMemoryLayout.RESPONSE_SEQUENCE, sequence);
+			throw e;
+		}
+
+		buffer.putInt(slot + SharedMemoryLayout.RESPONSE_TYPE, ActionBuffer.encodeType(actions.getType(id)));
+		buffer.putInt(slot + SharedMemoryLayout.RESPONSE_TARGET, actions.getTarget(id));
+		SharedMemoryLayout.putSequence(buffer, slot + SharedMemoryLayout.RESPONSE_SEQUENCE, sequence);
+	}
+
+	// waits until the simulator creates the file and marks it as running
+	private MappedByteBuffer waitFile() throws IOException, InterruptedException {
+		while (true) {
+			if (file.exists() && file.length() >= SharedMemoryLayout.HEADER_SIZE) {
+				try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+					MappedByteBuffer header = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, SharedMemoryLayout.HEADER_SIZE);
+					header.order(ByteOrder.nativeOrder());
+
+					if (SharedMemoryLayout.getSequence(header, SharedMemoryLayout.STATUS_OFFSET) == SharedMemoryLayout.STATUS_RUNNING
+							&& header.getInt(SharedMemoryLayout.MAGIC_OFFSET) == SharedMemoryLayout.MAGIC) {
+						if (header.getInt(SharedMemoryLayout.VERSION_OFFSET) != SharedMemoryLayout.VERSION) {
+							throw new IOException("Unsupported version of the shared file: " + header.getInt(SharedMemoryLayout.VERSION_OFFSET));
+						}
+						int size = SharedMemoryLayout.fileSize(header.getInt(SharedMemoryLayout.NUM_AGENTS_OFFSET),
+								header.getInt(SharedMemoryLayout.NUM_NODES_OFFSET));
+						MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+						mapped.order(ByteOrder.nativeOrder());
+						return mapped;
+					}
+				}
+			}
+			Thread.sleep(10);
+		}
+	}
+
+}
@@ -1,5 +1,9 @@
 package yaps.agent_library.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import yaps.metrics.core.VisitListener;
 import yaps.metrics.core.VisitsList;
 
 
@@ -9,8 +13,31 @@ public abstract class SimulatorConnector {
 	//na simulao local direta (sem uso de rede), adicionar agente no simulador
 	//se necessrio, cria uma "CallbackManager"
 	
+	private List<VisitListener> visitListeners;
+	
 	public SimulatorConnector() {
-		
+		visitListeners = new ArrayList<VisitListener>();
+	}
+
+	/**
+	 * Registers an object to be notified of each visit done in the simulation.
+	 */
+	public void addVisitListener(VisitListener listener) {
+		visitListeners.add(listener);
+	}
+
+	public void removeVisitListener(VisitListener listener) {
+		visitListeners.remove(listener);
+	}
+
+	/**
+	 * Notifies all the listeners of a visit. Must be called by the subclasses 
+	 * for each visit, in non-decreasing order of time.
+	 */
+	protected void fireVisit(long time, int node, int agent) {
+		for (int i = 0; i < visitListeners.size(); i++) {
+			visitListeners.get(i).onVisit(time, node, agent);
+		}
 	}
 	
 	//TODO: passar parametros: grafo, tempo de durao, quantidade de agentes
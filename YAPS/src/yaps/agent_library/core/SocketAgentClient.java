@@ -0,0 +1,197 @@
+package yaps.agent_library.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import yaps.graph_library.Graph;
+import yaps.local_simulator.ActionBuffer;
+import yaps.local_simulator.SocketProtocol;
+
+
+/**
+ * Connects agents to a simulator by TCP (see SocketConnector), using the protocol
+ * described in SocketProtocol. All the agents of the client share the same connection,
+ * and the decisions of each turn are sent in a single frame. The process must load the
+ * same graph used by the simulator.
+ * <br><br>
+ * The client can be run in its own thread (with run()) or, to handle many clients in
+ * few threads, with connect() and step().
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SocketAgentClient implements Closeable {
+	private final InetSocketAddress address;
+	private final Graph graph;
+
+	private List<Integer> identifiers;
+	private List<Agent> agents;
+
+	private Socket socket;
+	private DataInputStream input;
+	private DataOutputStream output;
+
+	// after the START frame
+	private int[] localIndex;      // of each agent of the simulation (or -1)
+	private SelfPerception[] selfPerceptions;
+	private long[] lastVisits;
+	private GraphPerception graphPerception;
+	private ActionBuffer actions;
+	private int[] requests;
+
+
+	public SocketAgentClient(InetSocketAddress address, Graph graph) {
+		this.address = address;
+		this.graph = graph;
+		this.identifiers = new ArrayList<Integer>();
+		this.agents = new ArrayList<Agent>();
+	}
+
+	/**
+	 * Adds the agent that has the given identifier in the simulation.
+	 */
+	public void addAgent(int identifier, Agent agent) {
+		if (socket != null) {
+			throw new IllegalStateException("Client already connected");
+		}
+		identifiers.add(identifier);
+		agents.add(agent);
+	}
+
+	/**
+	 * Connects to the simulator and runs the decisions of the agents until the end of
+	 * the simulation.
+	 */
+	public void run() throws IOException {
+		try {
+			connect();
+			while (step()) {
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Connects to the simulator and announces the agents.
+	 */
+	public void connect() throws IOException {
+		socket = new Socket();
+		socket.setTcpNoDelay(true);
+		socket.connect(address);
+		input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		output.writeInt(1 + 4 + 4 * agents.size());
+		output.writeByte(SocketProtocol.HELLO);
+		output.writeInt(agents.size());
+		for (int id : identifiers) {
+			output.writeInt(id);
+		}
+		output.flush();
+	}
+
+	/**
+	 * Waits and handles the next frame from the simulator. Returns false at the end of
+	 * the simulation. If an agent fails, the failure is sent to the simulator and the
+	 * exception is thrown.
+	 */
+	public boolean step() throws IOException {
+		int length = input.readInt();
+		if (length < 1 || length > SocketProtocol.MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid length of frame: " + length);
+		}
+		byte type = input.readByte();
+
+		switch (type) {
+		case SocketProtocol.START:
+			start(input.readInt(), input.readInt(), input.readLong());
+			return true;
+		case SocketProtocol.TURN:
+			turn();
+			return true;
+		case SocketProtocol.END:
+			return false;
+		default:
+			throw new IOException("Unexpected frame of type " + type);
+		}
+	}
+
+	private void start(int numAgents, int numNodes, long graphHash) {
+		if (numNodes != graph.getNumNodes() || graphHash != graph.contentHash()) {
+			throw new IllegalArgumentException("The graph is different from the graph of the simulator");
+		}
+
+		localIndex = new int[numAgents];
+		for (int a = 0; a < numAgents; a++) {
+			localIndex[a] = -1;
+		}
+		selfPerceptions = new SelfPerception[agents.size()];
+		for (int i = 0; i < agents.size(); i++) {
+			localIndex[identifiers.get(i)] = i;
+			selfPerceptions[i] = new SelfPerception(identifiers.get(i));
+		}
+
+		lastVisits = new long[numNodes];
+		graphPerception = new GraphPerception(graph, lastVisits);
+		actions = new ActionBuffer(numAgents);
+		requests = new int[agents.size()];
+	}
+
+	private void turn() throws IOException {
+		long time = input.readLong();
+		int numChanged = input.readInt();
+		for (int i = 0; i < numChanged; i++) {
+			int node = input.readInt();
+			lastVisits[node] = input.readLong();
+		}
+
+		// first, reads all the requests (the perceptions must be complete before deciding)
+		int count = input.readInt();
+		for (int i = 0; i < count; i++) {
+			int a = input.readInt();
+			selfPerceptions[localIndex[a]].update(time, input.readInt(), input.readInt());
+			requests[i] = a;
+		}
+
+		for (int i = 0; i < count; i++) {
+			int a = requests[i];
+			actions.stay(a);
+			try {
+				agents.get(localIndex[a]).decide(selfPerceptions[localIndex[a]], graphPerception, actions);
+			} catch (RuntimeException e) {
+				output.writeInt(1 + 4);
+				output.writeByte(SocketProtocol.FAILURE);
+				output.writeInt(a);
+				output.flush();
+				throw e;
+			}
+		}
+
+		output.writeInt(1 + 4 + 12 * count);
+		output.writeByte(SocketProtocol.ACTIONS);
+		output.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			int a = requests[i];
+			output.writeInt(a);
+			output.writeInt(ActionBuffer.encodeType(actions.getType(a)));
+			output.writeInt(actions.getTarget(a));
+		}
+		output.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (socket != null) {
+			socket.close();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package yaps.graph_library;
+
+
+/**
+ * Hash table from pairs (source, target) to the edges of a graph. The pair is
+ * packed in a long key and the table uses open addressing with linear probing,
+ * so no object is created in the lookups.
+ *
+ * @author Pablo A. Sampaio
+ */
+class EdgeIndex {
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private Edge[] values;   // null indicates an empty slot
+	private int size;
+	private int mask;
+
+
+	EdgeIndex(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity *= 2;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Edge[capacity];
+		this.mask = capacity - 1;
+		this.size = 0;
+	}
+
+	private static long key(int source, int target) {
+		return ((long)source << 32) | (target & 0xFFFFFFFFL);
+	}
+
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;  // fibonacci hashing
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	int size() {
+		return size;
+	}
+
+	Edge get(int source, int target) {
+		long k = key(source, target);
+		int i = slot(k);
+
+		while (values[i] != null) {
+			if (keys[i] == k) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+
+		return null;
+	}
+
+	void put(Edge edge) {
+		if (2 * (size + 1) > values.length) {
+			rehash(values.length * 2);
+		}
+
+		long k = key(edge.getSource(), edge.getTarget());
+		int i = slot(k);
+
+		while (values[i] != null) {
+			if (keys[i] == k) {
+				values[i] = edge;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = k;
+		values[i] = edge;
+		size ++;
+	}
+
+	void remove(int source, int target) {
+		long k = key(source, target);
+		int i = slot(k);
+
+		while (values[i] != null) {
+			if (keys[i] == k) {
+				values[i] = null;
+				size --;
+				shiftBack(i);
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	// after removing slot "free", moves back the following entries of the
+	// cluster that would become unreachable (no "tombstones" are needed)
+	private void shiftBack(int free) {
+		int i = (free + 1) & mask;
+		int home;
+
+		while (values[i] != null) {
+			home = slot(keys[i]);
+			// moves the entry if its home slot is not in the cyclic range (free, i]
+			if (((i - home) & mask) >= ((i - free) & mask)) {
+				keys[free] = keys[i];
+				values[free] = values[i];
+				values[i] = null;
+				free = i;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	private void rehash(int newCapacity) {
+		Edge[] oldValues = this.values;
+
+		allocate(newCapacity);
+
+		for (int i = 0; i < oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				put(oldValues[i]);
+			}
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package yaps.graph_library;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -15,7 +17,16 @@ import java.util.List;
  * <br><br>
  * In a graph with n nodes, nodes are represented with integers from 0 to n-1. If there 
  * are m (directed) edges, their identifiers range from 0 to m.
- * 
+ * <br><br>
+ * In the CSR representation (compressed sparse rows), the graph is immutable and the
+ * out-edges of each node are kept in primitive arrays, sorted by target node.
+ * <br><br>
+ * For all representations, the out-edges of a node can be traversed without creating
+ * objects with getOutDegree()/getOutTarget()/getOutLength() or with forEachOutEdge().
+ * <br><br>
+ * In the LISTS representation, the edges may also be indexed in a hash table, to find 
+ * the edge between two given nodes in constant time. See setEdgeIndexing().
+ *
  * @author Pablo A. Sampaio
  */
 public class Graph {
@@ -25,6 +36,19 @@ public class Graph {
 	private Edge[][]     matrix;      // adjacencies matrix
 	private List<Edge>[] adjacencies; // adjacencies lists
 	
+	// compressed sparse rows: the out-edges of node v are in positions
+	// csrOffsets[v] (inclusive) to csrOffsets[v+1] (exclusive) of the other arrays
+	private int[]     csrOffsets;
+	private int[]     csrTargets;
+	private int[]     csrLengths;
+	private int[]     csrIds;
+	private boolean[] csrDirected;
+	
+	private int[][] matrixRows; // (only MATRIX) targets of each row, created on demand
+	
+	private boolean   indexedEdges;
+	private EdgeIndex edgeIndex;  // (only LISTS, if indexed) edges by (source,target)
+
 	private  GraphDataRepr representation; // indicate which of the structures above are used
 	
 	
@@ -32,21 +56,79 @@ public class Graph {
 		this(numVertices, GraphDataRepr.LISTS);
 	}
 
+	/**
+	 * Creates a graph without edges. Since CSR graphs are immutable, a graph created with
+	 * this representation will remain without edges. See changeRepresentation().
+	 */
 	@SuppressWarnings("unchecked")
 	public Graph(int numVertices, GraphDataRepr r) {
 		this.numNodes = numVertices;
 		this.numEdges = 0;
 		this.representation = (r == null) ? GraphDataRepr.LISTS : r;			
 		
-		if (r != GraphDataRepr.LISTS) {
+		if (hasMatrix()) {
 			matrix = new Edge[numVertices][numVertices];
 		}
-		if (r != GraphDataRepr.MATRIX) {
-			adjacencies = new LinkedList[numVertices];
+		if (hasLists()) {
+			adjacencies = new ArrayList[numVertices];
 			for (int i = 0; i < numVertices; i++) {
-				adjacencies[i] = new LinkedList<Edge>();
+				adjacencies[i] = new ArrayList<Edge>();
 			}
 		}
+		if (representation == GraphDataRepr.MATRIX) {
+			matrixRows = new int[numVertices][];
+		}
+		if (representation == GraphDataRepr.CSR) {
+			csrOffsets = new int[numVertices + 1];
+			csrTargets = new int[0];
+			csrLengths = new int[0];
+			csrIds = new int[0];
+			csrDirected = new boolean[0];
+		}
+	}
+
+	private boolean hasMatrix() {
+		return representation == GraphDataRepr.MATRIX || representation == GraphDataRepr.MIXED;
+	}
+
+	private boolean hasLists() {
+		return representation == GraphDataRepr.LISTS || representation == GraphDataRepr.MIXED;
+	}
+
+	/**
+	 * Turns on (or off) the hash index of the edges by their nodes (source,target), 
+	 * used only in the LISTS representation. It makes existsEdge(), getLength(), getEdge() 
+	 * and the insertions to run in constant expected time, without the quadratic memory 
+	 * of the matrix.
+	 */
+	public void setEdgeIndexing(boolean enabled) {
+		this.indexedEdges = enabled;
+		updateEdgeIndex();
+	}
+	
+	public boolean isEdgeIndexing() {
+		return this.indexedEdges;
+	}
+	
+	private void updateEdgeIndex() {
+		if (indexedEdges && representation == GraphDataRepr.LISTS) {
+			if (edgeIndex == null) {
+				edgeIndex = new EdgeIndex(numNodes);
+				for (int v = 0; v < numNodes; v++) {
+					for (Edge e : adjacencies[v]) {
+						edgeIndex.put(e);
+					}
+				}
+			}
+		} else {
+			edgeIndex = null;
+		}
+	}
+	
+	private void checkMutable() {
+		if (representation == GraphDataRepr.CSR) {
+			throw new UnsupportedOperationException("Graph in CSR representation can't be changed!");
+		}
 	}
 
 	public int addEdge(int v, int u, int length, boolean directed) {
@@ -59,6 +141,7 @@ public class Graph {
 	
 	//otimizado para: matrix, mixed
 	public int addArc(int v, int u, int length) {
+		checkMutable();
 		int id = this.numEdges;
 		this.addArcInternal(id, v, u, length, true);
 		this.numEdges ++;
@@ -71,15 +154,22 @@ public class Graph {
 		if (existsEdge(v, u)) {
 			throw new IllegalArgumentException("Edge from " + v + " to " + u + " already exist!");	
 		}
-		if (representation != GraphDataRepr.MATRIX) {
+		if (hasLists()) {
 			adjacencies[v].add(edge);
 		}
-		if (representation != GraphDataRepr.LISTS) {
+		if (edgeIndex != null) {
+			edgeIndex.put(edge);
+		}
+		if (hasMatrix()) {
 			matrix[v][u] = edge;
 		}
+		if (matrixRows != null) {
+			matrixRows[v] = null;
+		}
 	}
 
 	public int addUndirectedEdge(int v, int u, int length) {
+		checkMutable();
 		int id = this.numEdges;
 		this.addArcInternal(id, v, u, length, false);
 		this.addArcInternal(id, u, v, length, false);
@@ -89,6 +179,7 @@ public class Graph {
 
 	//otimizado para: matrix
 	public void removeEdge(int v, int u) {
+		checkMutable();
 		Edge e = this.getEdge(v,u);
 		removeArcInternal(v,u);
 		if (!e.isDirected()) {
@@ -97,12 +188,18 @@ public class Graph {
 	}
 	
 	private void removeArcInternal(int v, int u) {
-		if (representation != GraphDataRepr.LISTS) {
+		if (hasMatrix()) {
 			matrix[v][u] = null;
 		}
-		if (representation != GraphDataRepr.MATRIX) {
+		if (hasLists()) {
 			adjacencies[v].remove(new Edge(v,u));
 		}
+		if (edgeIndex != null) {
+			edgeIndex.remove(v, u);
+		}
+		if (matrixRows != null) {
+			matrixRows[v] = null;
+		}
 	}
 
 	public int getNumNodes() {
@@ -115,8 +212,12 @@ public class Graph {
 	
 	//otimizado para: matrix, mixed
 	public boolean existsEdge(int v, int u) {
-		if (representation != GraphDataRepr.LISTS) {
+		if (hasMatrix()) {
 			return matrix[v][u] != null;
+		} else if (representation == GraphDataRepr.CSR) {
+			return csrFind(v, u) != -1;
+		} else if (edgeIndex != null) {
+			return edgeIndex.get(v, u) != null;
 		} else {
 			return adjacencies[v].contains(new Edge(v,u));
 		}
@@ -124,9 +225,17 @@ public class Graph {
 
 	//otimizado para: matrix, mixed
 	public int getLength(int source, int target) {
-		if (representation != GraphDataRepr.LISTS) {
+		if (hasMatrix()) {
 			return matrix[source][target].getLength();
-		
+
+		} else if (representation == GraphDataRepr.CSR) {
+			int pos = csrFind(source, target);
+			return (pos == -1) ? 0 : csrLengths[pos];
+
+		} else if (edgeIndex != null) {
+			Edge edge = edgeIndex.get(source, target);
+			return (edge == null) ? 0 : edge.getLength();
+
 		} else {
 			Edge vu = new Edge(source,target);
 			for (Edge edge : adjacencies[source]) {
@@ -139,9 +248,16 @@ public class Graph {
 	}
 
 	public Edge getEdge(int source, int target) {
-		if (representation != GraphDataRepr.LISTS) {
+		if (hasMatrix()) {
 			return matrix[source][target];
-		
+
+		} else if (representation == GraphDataRepr.CSR) {
+			int pos = csrFind(source, target);
+			return (pos == -1) ? null : csrEdge(source, pos);
+
+		} else if (edgeIndex != null) {
+			return edgeIndex.get(source, target);
+
 		} else {
 			Edge edgeCopy = new Edge(source,target);
 			for (Edge edge : adjacencies[source]) {
@@ -155,13 +271,19 @@ public class Graph {
 	
 	//otimizado para: lists
 	//obs.: getOutEdges is more memory-efficient e may be faster
+	//obs.: getOutDegree/getOutTarget don't create any object 
 	public List<Integer> getSuccessors(int node) {
 		List<Integer> succ = new LinkedList<Integer>();
 		
-		if (representation != GraphDataRepr.MATRIX) {
+		if (hasLists()) {
 			for (Edge e : adjacencies[node]) {
 				succ.add(e.getTarget());
 			}
+
+		} else if (representation == GraphDataRepr.CSR) {
+			for (int pos = csrOffsets[node]; pos < csrOffsets[node+1]; pos++) {
+				succ.add(csrTargets[pos]);
+			}
 			
 		} else {
 			for (int u = 0; u < matrix.length; u++) {
@@ -175,11 +297,15 @@ public class Graph {
 	}
 	
 	//otimizado para: lists 
+	//obs.: in CSR, the edges are created on demand (when accessed in the list)
 	public List<Edge> getOutEdges(int source) {
 		List<Edge> succ = new LinkedList<Edge>();
 		
-		if (representation != GraphDataRepr.MATRIX) {
+		if (hasLists()) {
 			succ = Collections.unmodifiableList(adjacencies[source]);
+
+		} else if (representation == GraphDataRepr.CSR) {
+			succ = new CsrEdgesView(source);
 			
 		} else {
 			for (int u = 0; u < matrix.length; u++) {
@@ -192,6 +318,122 @@ public class Graph {
 		return succ;
 	}
 
+	/**
+	 * Returns the number of edges leaving the node. 
+	 */
+	public int getOutDegree(int node) {
+		if (hasLists()) {
+			return adjacencies[node].size();
+		} else if (representation == GraphDataRepr.CSR) {
+			return csrOffsets[node+1] - csrOffsets[node];
+		} else {
+			return matrixRow(node).length;
+		}
+	}
+
+	/**
+	 * Returns the target node of the i-th edge leaving the node, for
+	 * i in {0, ..., getOutDegree(node)-1}. 
+	 */
+	public int getOutTarget(int node, int i) {
+		if (hasLists()) {
+			return adjacencies[node].get(i).getTarget();
+		} else if (representation == GraphDataRepr.CSR) {
+			return csrTargets[csrPosition(node, i)];
+		} else {
+			return matrixRow(node)[i];
+		}
+	}
+
+	/**
+	 * Returns the length of the i-th edge leaving the node, for
+	 * i in {0, ..., getOutDegree(node)-1}. 
+	 */
+	public int getOutLength(int node, int i) {
+		if (hasLists()) {
+			return adjacencies[node].get(i).getLength();
+		} else if (representation == GraphDataRepr.CSR) {
+			return csrLengths[csrPosition(node, i)];
+		} else {
+			return matrix[node][matrixRow(node)[i]].getLength();
+		}
+	}
+
+	/**
+	 * Returns the identifier of the i-th edge leaving the node, for
+	 * i in {0, ..., getOutDegree(node)-1}. 
+	 */
+	public int getOutEdgeId(int node, int i) {
+		if (hasLists()) {
+			return adjacencies[node].get(i).getId();
+		} else if (representation == GraphDataRepr.CSR) {
+			return csrIds[csrPosition(node, i)];
+		} else {
+			return matrix[node][matrixRow(node)[i]].getId();
+		}
+	}
+
+	/**
+	 * Passes each edge leaving the node to the consumer, in the same 
+	 * order given by getOutTarget(). 
+	 */
+	public void forEachOutEdge(int node, IntEdgeConsumer consumer) {
+		if (hasLists()) {
+			List<Edge> edges = adjacencies[node];
+			Edge e;
+			for (int i = 0; i < edges.size(); i++) {
+				e = edges.get(i);
+				consumer.accept(node, e.getTarget(), e.getLength(), e.getId());
+			}
+		
+		} else if (representation == GraphDataRepr.CSR) {
+			for (int pos = csrOffsets[node]; pos < csrOffsets[node+1]; pos++) {
+				consumer.accept(node, csrTargets[pos], csrLengths[pos], csrIds[pos]);
+			}
+			
+		} else {
+			Edge e;
+			for (int u = 0; u < matrix.length; u++) {
+				e = matrix[node][u];
+				if (e != null) {
+					consumer.accept(node, u, e.getLength(), e.getId());
+				}
+			}
+		}
+	}
+	
+	// the targets of the edges in the row, created (and kept) on demand
+	private int[] matrixRow(int node) {
+		int[] row = matrixRows[node];
+		
+		if (row == null) {
+			int degree = 0;
+			for (int u = 0; u < matrix.length; u++) {
+				if (matrix[node][u] != null) {
+					degree ++;
+				}
+			}
+			row = new int[degree];
+			degree = 0;
+			for (int u = 0; u < matrix.length; u++) {
+				if (matrix[node][u] != null) {
+					row[degree++] = u;
+				}
+			}
+			matrixRows[node] = row;
+		}
+		
+		return row;
+	}
+	
+	private int csrPosition(int node, int i) {
+		int pos = csrOffsets[node] + i;
+		if (i < 0 || pos >= csrOffsets[node+1]) {
+			throw new IndexOutOfBoundsException("index:" + i + " degree:" + getOutDegree(node));
+		}
+		return pos;
+	}
+	
 	public boolean isSymmetrical() {		
 		for (int v = 0; v < getNumNodes(); v++) {
 			for (Edge edge : this.getOutEdges(v)) {
@@ -209,12 +451,27 @@ public class Graph {
 		return representation;
 	}
 	
+	/**
+	 * Changes the internal data structures of the graph. Changing to CSR makes
+	 * the graph immutable, but the graph can be changed back to other representation
+	 * (to allow changes).
+	 */
 	@SuppressWarnings("unchecked")
 	public void changeRepresentation(GraphDataRepr newRepresentation) {
 		GraphDataRepr oldRepresetation = getDataRepr();
 		if (oldRepresetation == newRepresentation) {
 			return;
 		}
+
+		if (newRepresentation == GraphDataRepr.CSR) {
+			buildCsr();
+			this.matrix = null;
+			this.adjacencies = null;
+			this.matrixRows = null;
+			this.representation = newRepresentation;
+			updateEdgeIndex();
+			return;
+		}
 		
 		List<Edge>[] adj_ = null;
 		Edge[][] mat_ = null;
@@ -223,14 +480,14 @@ public class Graph {
 		List<Edge> outEdges;
 
 		if (newRepresentation != GraphDataRepr.LISTS 
-				&& oldRepresetation == GraphDataRepr.LISTS) {
+				&& (oldRepresetation == GraphDataRepr.LISTS || oldRepresetation == GraphDataRepr.CSR)) {
 			mat_ = new Edge[numVertices][numVertices];
 		}
 		if (newRepresentation != GraphDataRepr.MATRIX
-				&& oldRepresetation == GraphDataRepr.MATRIX) {
-			adj_ = new LinkedList[numVertices];
+				&& (oldRepresetation == GraphDataRepr.MATRIX || oldRepresetation == GraphDataRepr.CSR)) {
+			adj_ = new ArrayList[numVertices];
 			for (int i = 0; i < numVertices; i++) {
-				adj_[i] = new LinkedList<Edge>();
+				adj_[i] = new ArrayList<Edge>();
 			}
 		}
 		
@@ -252,14 +509,124 @@ public class Graph {
 		if (representation == GraphDataRepr.LISTS) {
 			this.matrix = null;
 		}
+		if (representation == GraphDataRepr.CSR) {
+			this.csrOffsets = null;
+			this.csrTargets = null;
+			this.csrLengths = null;
+			this.csrIds = null;
+			this.csrDirected = null;
+		}
 		if (adj_ != null) {
 			this.adjacencies = adj_;
 		}
 		if (mat_ != null) {
 			this.matrix = mat_;
 		}
+		this.matrixRows = (newRepresentation == GraphDataRepr.MATRIX) ? new int[numVertices][] : null;
 		
 		this.representation = newRepresentation;
+		updateEdgeIndex();
+	}
+
+	// builds the CSR arrays from the current representation, with the
+	// out-edges of each node sorted by target (with two counting sorts)
+	private void buildCsr() {
+		int n = getNumNodes();
+
+		int[] inDegree = new int[n + 1];
+		int[] outDegree = new int[n + 1];
+		int numArcs = 0;
+
+		for (int v = 0; v < n; v++) {
+			for (Edge e : getOutEdges(v)) {
+				inDegree[e.getTarget() + 1] ++;
+				outDegree[v + 1] ++;
+				numArcs ++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			inDegree[v + 1] += inDegree[v];
+			outDegree[v + 1] += outDegree[v];
+		}
+
+		// first sort: edges grouped by target
+		Edge[] byTarget = new Edge[numArcs];
+		for (int v = 0; v < n; v++) {
+			for (Edge e : getOutEdges(v)) {
+				byTarget[inDegree[e.getTarget()] ++] = e;
+			}
+		}
+
+		// second sort (stable): by source, so each row ends sorted by target
+		int[] offsets = outDegree;
+		int[] next = new int[n];
+		System.arraycopy(offsets, 0, next, 0, n);
+
+		int[] targets = new int[numArcs];
+		int[] lengths = new int[numArcs];
+		int[] ids = new int[numArcs];
+		boolean[] directed = new boolean[numArcs];
+		int pos;
+
+		for (Edge e : byTarget) {
+			pos = next[e.getSource()] ++;
+			targets[pos] = e.getTarget();
+			lengths[pos] = e.getLength();
+			ids[pos] = e.getId();
+			directed[pos] = e.isDirected();
+		}
+
+		this.csrOffsets = offsets;
+		this.csrTargets = targets;
+		this.csrLengths = lengths;
+		this.csrIds = ids;
+		this.csrDirected = directed;
+	}
+
+	// binary search in the (sorted) row of the source, returns -1 if not found
+	private int csrFind(int source, int target) {
+		int low = csrOffsets[source];
+		int high = csrOffsets[source + 1] - 1;
+		int middle;
+
+		while (low <= high) {
+			middle = (low + high) >>> 1;
+			if (csrTargets[middle] < target) {
+				low = middle + 1;
+			} else if (csrTargets[middle] > target) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+
+		return -1;
+	}
+
+	private Edge csrEdge(int source, int pos) {
+		return new Edge(csrIds[pos], source, csrTargets[pos], csrLengths[pos], csrDirected[pos]);
+	}
+
+	// read-only view of the out-edges of a node in CSR
+	private class CsrEdgesView extends AbstractList<Edge> {
+		private final int source;
+
+		CsrEdgesView(int source) {
+			this.source = source;
+		}
+
+		@Override
+		public Edge get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index:" + index + " size:" + size());
+			}
+			return csrEdge(source, csrOffsets[source] + index);
+		}
+
+		@Override
+		public int size() {
+			return csrOffsets[source + 1] - csrOffsets[source];
+		}
 	}
 	
 	public boolean equals(Object o) {
@@ -285,11 +652,41 @@ public class Graph {
 		
 		return true;
 	}
+
+	/**
+	 * Returns a 64-bit hash of the nodes and (directed) edges of the graph, with their
+	 * lengths. It doesn't depend on the representation, on the order in which the edges 
+	 * were added or on their identifiers, so equal graphs (see equals()) have the same hash. 
+	 */
+	public long contentHash() {
+		long hash = mix(numNodes);
+		
+		for (int v = 0; v < numNodes; v++) {
+			for (int i = 0; i < getOutDegree(v); i++) {
+				// the sum makes the result independent of the order of the edges
+				hash += mix((((long)v << 32) | getOutTarget(v, i)) ^ mix(getOutLength(v, i)));
+			}
+		}
+		
+		return hash;
+	}
+
+	// "splitmix64" finalizer
+	private static long mix(long x) {
+		x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+		return x ^ (x >>> 31);
+	}
+
+	public int hashCode() {
+		long hash = contentHash();
+		return (int)(hash ^ (hash >>> 32));
+	}
 	
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 
-		if (representation != GraphDataRepr.LISTS) {
+		if (hasMatrix()) {
 			builder.append("\n");
 			for (int i = 0; i < matrix.length; i++) {
 				for (int j = 0; j < matrix.length; j++) {
@@ -300,13 +697,13 @@ public class Graph {
 			}
 		
 		}
-		if (representation != GraphDataRepr.MATRIX) {
+		if (hasLists() || representation == GraphDataRepr.CSR) {
 			builder.append("\n");
-			for (int u = 0; u < adjacencies.length; u++) {
+			for (int u = 0; u < numNodes; u++) {
 				builder.append("Adj[");
 				builder.append(u);
 				builder.append("] = ");
-				builder.append(adjacencies[u]);
+				builder.append(getOutEdges(u));
 				builder.append("\n");
 			}
 		}
@@ -4,5 +4,6 @@ package yaps.graph_library;
 public enum GraphDataRepr {
 	MATRIX ,
 	LISTS,
-	MIXED;
+	MIXED,
+	CSR;     // compressed sparse rows - immutable, see Graph.changeRepresentation()
 }
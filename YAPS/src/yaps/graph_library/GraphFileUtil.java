@@ -38,6 +38,18 @@ public class GraphFileUtil {
 		}
 	}
 	
+	/**
+	 * Reads the graph and changes it to the given representation. It may be used, for 
+	 * example, to read a graph directly as an (immutable) CSR graph.
+	 */
+	public static Graph read(String fileName, GraphFileFormat format, GraphDataRepr rep) throws IOException {
+		Graph graph = read(fileName, format);
+		if (graph != null) {
+			graph.changeRepresentation(rep);
+		}
+		return graph;
+	}
+	
 	public static void write(Graph g, String fileName, GraphFileFormat format) throws IOException {
 		switch (format) {
 		case ADJACENCY_LIST:
@@ -89,8 +101,10 @@ public class GraphFileUtil {
 		}
 		
 		//String graphName = file.substring(startIndex);
-		Graph graph = new Graph(numVertices, rep);
-		
+		//obs.: CSR graphs are immutable, so they are built from a LISTS graph
+		Graph graph = new Graph(numVertices, (rep == GraphDataRepr.CSR) ? GraphDataRepr.LISTS : rep);
+		graph.setEdgeIndexing(true);
+
 		String sucessorStr, pesoStr;
 		int sucessor, peso;
 		
@@ -112,6 +126,7 @@ public class GraphFileUtil {
 		}		
 		inputFile.close();
 		
+		graph.changeRepresentation(rep);
 		return graph;
 	}
 
@@ -285,7 +300,8 @@ public class GraphFileUtil {
 		
 		/* creates the graph object */
 		Graph graph = new Graph(numNodes);
-		
+		graph.setEdgeIndexing(true);
+
 		/* reads edges' information */		
 		String edge;
 		int source, target, length;
@@ -0,0 +1,14 @@
+package yaps.graph_library;
+
+
+/**
+ * Receives the edges (arcs) of a graph as primitive values. Used to iterate through 
+ * the out-edges of a node without creating objects, see Graph.forEachOutEdge().
+ * 
+ * @author Pablo A. Sampaio
+ */
+public interface IntEdgeConsumer {
+
+	public void accept(int source, int target, int length, int edgeId);
+	
+}
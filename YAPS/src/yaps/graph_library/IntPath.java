@@ -0,0 +1,266 @@
+package yaps.graph_library;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import yaps.graph_library.algorithms.ShortestPaths;
+
+
+/**
+ * Represents a path with repetitions of nodes allowed (like Path), keeping the nodes 
+ * in a growable array of primitive integers. It gives constant-time access to the 
+ * nodes by their positions, so the operations here run in linear time.
+ * <br><br>
+ * Use toPath() and the constructor IntPath(Collection) to convert from/to Path.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class IntPath {
+	private int[] nodes;
+	private int size;
+
+	public IntPath() {
+		this(10);
+	}
+	
+	public IntPath(int initialCapacity) {
+		this.nodes = new int[Math.max(1, initialCapacity)];
+		this.size = 0;
+	}
+
+	/**
+	 * Creates a path with the given nodes (the array is not copied).
+	 */
+	public IntPath(int[] nodes) {
+		this.nodes = (nodes.length == 0) ? new int[1] : nodes;
+		this.size = nodes.length;
+	}
+
+	public IntPath(Collection<Integer> c) {
+		this(c.size());
+		for (Integer node : c) {
+			add(node);
+		}
+	}
+
+	/**
+	 * Returns a new Path with the same nodes.
+	 */
+	public Path toPath() {
+		Path path = new Path();
+		for (int i = 0; i < size; i++) {
+			path.add(nodes[i]);
+		}
+		return path;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return nodes[index];
+	}
+
+	public int getFirst() {
+		return get(0);
+	}
+	
+	public int getLast() {
+		return get(size - 1);
+	}
+
+	public void add(int node) {
+		ensureCapacity(size + 1);
+		nodes[size] = node;
+		size ++;
+	}
+
+	/**
+	 * Appends the nodes of the other path starting at position 'from'.
+	 */
+	public void addAll(IntPath other, int from) {
+		int count = other.size - from;
+		if (count > 0) {
+			ensureCapacity(size + count);
+			System.arraycopy(other.nodes, from, this.nodes, size, count);
+			size += count;
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > nodes.length) {
+			nodes = Arrays.copyOf(nodes, Math.max(capacity, 2 * nodes.length));
+		}
+	}
+
+	/**
+	 * Returns a copy of the nodes.
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(nodes, size);
+	}
+
+	/**
+	 * Tests if the (directed) edges used in this path really exist in the graph.
+	 */
+	public boolean isValid(Graph graph) {
+		for (int i = 1; i < size; i++) {
+			if (! graph.existsEdge(nodes[i-1], nodes[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates the cost of the path in the given graph. 
+	 * Throws IllegalArgumentException if this is not a valid path in the graph.
+	 */
+	public double getCost(Graph graph) {
+		int cost = 0;
+		
+		for (int i = 1; i < size; i++) {
+			if (! graph.existsEdge(nodes[i-1], nodes[i]) ) {
+				throw new IllegalArgumentException("grafo nao permite caminho de " + nodes[i-1] + " a " + nodes[i]);
+			}
+			cost += graph.getLength(nodes[i-1], nodes[i]);
+		}
+		
+		return cost;
+	}
+
+	/**
+	 * Tests if the start and end vertex of the path are the same 
+	 * i.e. tests if this is a closed path (not necessarily simple).
+	 */
+	public boolean isCycle() {
+		return size > 0 && nodes[0] == nodes[size - 1];
+	}
+
+	/**
+	 * Calculates the cost of the path in the given graph, considering that each (u,v) 
+	 * edge has the cost of the shortest path from u to v. <br>
+	 * Throws IllegalArgumentException if one the paths is not possible in the graph 
+	 * (e.g. if the graph is not strongly connected).
+	 */
+	public double getCostExpandingShortestPaths(ShortestPaths shortest) {
+		int totalCost = 0;
+		double distance;
+		
+		for (int i = 1; i < size; i++) {
+			distance = shortest.getDistance(nodes[i-1], nodes[i]);
+			
+			if (distance == Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("grafo nao permite caminho de " + nodes[i-1] + " a " + nodes[i]);
+			}
+			
+			totalCost += distance;
+		}
+
+		return totalCost;
+	}
+
+	/**
+	 * Returns a new path that exchanges each edge (u,v) of this path by the shortest 
+	 * path from u to v. <br> 
+	 * Throws IllegalArgumentException if one of the paths is not possible in the graph 
+	 * (e.g. if the graph is not strongly connected). If this path is empty, returns an
+	 * empty path.
+	 */
+	public IntPath expandShortestPaths(ShortestPaths shortest) {
+		IntPath realPath = new IntPath(2 * size);
+		IntPath partialPath;
+
+		if (size == 0) {
+			return realPath;
+		}
+		realPath.add(nodes[0]);
+		
+		for (int i = 1; i < size; i++) {
+			partialPath = shortest.getIntPath(nodes[i-1], nodes[i]);
+			
+			if (partialPath == null) {
+				throw new IllegalArgumentException("grafo nao permite caminho de " + nodes[i-1] + " a " + nodes[i]);
+			}
+			
+			realPath.addAll(partialPath, 1);
+		}
+		
+		return realPath;
+	}
+
+	/**
+	 * If it is a cycle (i.e. the start and end nodes are the same), returns a new cycle
+	 * with the same edges, starting (and ending) in the given vertex. Otherwise, or if 
+	 * the vertex is not in the cycle, returns null. This path is not changed.
+	 */
+	public IntPath rotateCycle(int startNode) {
+		if (!this.isCycle()) {
+			return null;
+		}
+		
+		int length = size - 1;  //without the repetition of the first node
+		int startIndex = -1;
+		
+		for (int i = 0; i < length && startIndex == -1; i++) {
+			if (nodes[i] == startNode) {
+				startIndex = i;
+			}
+		}
+		if (startIndex == -1) {
+			return null;
+		}
+		
+		IntPath newPath = new IntPath(size);
+		System.arraycopy(this.nodes, startIndex, newPath.nodes, 0, length - startIndex);
+		System.arraycopy(this.nodes, 0, newPath.nodes, length - startIndex, startIndex + 1);
+		newPath.size = size;
+		
+		return newPath;
+	}
+
+	public boolean equals(Object o) {
+		if (! (o instanceof IntPath)) {
+			return false;
+		}
+		IntPath other = (IntPath)o;
+		if (this.size != other.size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (this.nodes[i] != other.nodes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int hashCode() {
+		int hash = 1;
+		for (int i = 0; i < size; i++) {
+			hash = 31 * hash + nodes[i];
+		}
+		return hash;
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(nodes[i]);
+		}
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
@@ -1,10 +1,11 @@
 package yaps.graph_library;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
-import yaps.graph_library.algorithms.AllShortestPaths;
+import yaps.graph_library.algorithms.ShortestPaths;
 
 
 /**
@@ -38,12 +39,19 @@ public class Path extends LinkedList<Integer> {
 	 */
 	public double getCost(Graph graph) {
 		int cost = 0;
+		Iterator<Integer> iterator = this.iterator();
+		int previous, next;
 		
-		for (int i = 1; i < this.size(); i++) {
-			if (! graph.existsEdge(this.get(i-1), this.get(i)) ) {
-				throw new IllegalArgumentException("grafo nao permite caminho de " + this.get(i-1) + " a " + this.get(i));
+		if (iterator.hasNext()) {
+			previous = iterator.next();
+			while (iterator.hasNext()) {
+				next = iterator.next();
+				if (! graph.existsEdge(previous, next) ) {
+					throw new IllegalArgumentException("grafo nao permite caminho de " + previous + " a " + next);
+				}
+				cost += graph.getLength(previous, next);
+				previous = next;
 			}
-			cost += graph.getLength(this.get(i-1), this.get(i));
 		}
 		
 		return cost;
@@ -54,7 +62,7 @@ public class Path extends LinkedList<Integer> {
 	 * i.e. tests if this is a closed path (not necessarily simple).
 	 */
 	public boolean isCycle() {
-		return (super.getFirst() == super.getLast());
+		return super.getFirst().equals(super.getLast());
 	}
 	
 	/**
@@ -66,19 +74,25 @@ public class Path extends LinkedList<Integer> {
 	 * It should return the same value as: <br>
 	 * expandShortestPaths(graph).getCost(graph) .
 	 */
-	public double getCostExpandingShortestPaths(AllShortestPaths shortest) {
-		int n = this.size();
+	public double getCostExpandingShortestPaths(ShortestPaths shortest) {
 		int totalCost = 0;
 		double distance;
+		Iterator<Integer> iterator = this.iterator();
+		int previous, next;
 		
-		for (int i = 1; i < n; i++) {
-			distance = shortest.getDistance(this.get(i-1), this.get(i));
-			
-			if (distance == Integer.MAX_VALUE) {
-				throw new IllegalArgumentException("grafo nao permite caminho de " + this.get(i-1) + " a " + this.get(i));
+		if (iterator.hasNext()) {
+			previous = iterator.next();
+			while (iterator.hasNext()) {
+				next = iterator.next();
+				distance = shortest.getDistance(previous, next);
+				
+				if (distance == Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("grafo nao permite caminho de " + previous + " a " + next);
+				}
+				
+				totalCost += distance;
+				previous = next;
 			}
-			
-			totalCost += distance;
 		}
 
 		return totalCost;
@@ -90,21 +104,27 @@ public class Path extends LinkedList<Integer> {
 	 * Returns null if one of the paths is not possible in the graph (e.g. if 
 	 * the graph is not strongly connected).
 	 */
-	public Path expandShortestPaths(AllShortestPaths shortest) {
+	public Path expandShortestPaths(ShortestPaths shortest) {
 		Path realPath = new Path();	
-		realPath.add(this.get(0));
+		Iterator<Integer> iterator = this.iterator();
+		int previous = iterator.next();
+		int next;
+
+		realPath.add(previous);
 
 		List<Integer> partialPath;
 
-		for (int i = 1; i < this.size(); i++) {
-			partialPath = shortest.getPath(this.get(i-1), this.get(i));
+		while (iterator.hasNext()) {
+			next = iterator.next();
+			partialPath = shortest.getPath(previous, next);
 			
 			if (partialPath == null) {
-				throw new IllegalArgumentException("grafo nao permite caminho de " + this.get(i-1) + " a " + this.get(i));
+				throw new IllegalArgumentException("grafo nao permite caminho de " + previous + " a " + next);
 			}
 			
 			partialPath.remove(0);
 			realPath.addAll(partialPath);
+			previous = next;
 		}
 		
 		return realPath;
@@ -124,12 +144,8 @@ public class Path extends LinkedList<Integer> {
 		int startIndex = this.indexOf(startNode);
 		Path newPath = new Path();
 		
-		for (int i = startIndex; i < this.size(); i++) {
-			newPath.add(this.get(i));
-		}		
-		for (int i = 0; i <= startIndex; i++) {
-			newPath.add(this.get(i));
-		}
+		newPath.addAll(this.subList(startIndex, this.size()));
+		newPath.addAll(this.subList(0, startIndex + 1));
 		
 		return newPath;
 	}
@@ -1,96 +1,433 @@
 package yaps.graph_library.algorithms;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
 import yaps.graph_library.Graph;
+import yaps.graph_library.IntPath;
 import yaps.graph_library.Path;
 import yaps.graph_library.GraphDataRepr;
+import yaps.util.ParallelLoop;
+
+
+/**
+ * Calculates the shortest paths between all pairs of nodes. Two algorithms are available:
+ * <ul>
+ * <li>Floyd-Warshall's algorithm, in O(n^3). The matrix is computed in square blocks (tiles)
+ *     that fit in the cache and, in each phase, the independent blocks are computed in parallel.
+ * <li>Dijkstra's algorithm once for each source node, in O(n.m.log n), with the sources spread
+ *     among the available cores. It is much faster in sparse graphs, like most patrolling maps,
+ *     but it doesn't accept edges with negative lengths.
+ * </ul>
+ * The method compute() chooses one of them based on the density of the graph. Both give
+ * exactly the same answers: they only compute the distances, then the paths are chosen by
+ * the same procedure (a breadth-first search in the arcs that are part of some shortest path).
+ * <br><br>
+ * The matrices are stored in flat arrays (row by row). They can be saved in a binary file
+ * and loaded later through memory-mapped buffers, without copying them to the heap (and
+ * with the pages shared by all the processes that use the same file). See computeCached().
+ *
+ * @author Pablo A. Sampaio
+ */
+public class AllShortestPaths extends GraphAlgorithm implements ShortestPaths {
+	private static final int BLOCK_SIZE = 64;
+	private static final int SOURCES_GRAIN = 8;
+
+	// Dijkstra is used if (arcs * log2(nodes) * DIJKSTRA_FACTOR) < nodes^2
+	private static final int DIJKSTRA_FACTOR = 4;
 
+	private int numNodes;
 
-public class AllShortestPaths extends GraphAlgorithm {
-	private int[][] distance;
-	private int[][] predecessor;
-	private int[][] successor;
+	// matrices n x n, the element (i,j) is in position i*n + j
+	private int[] distance;
+	private int[] predecessor;
+	private int[] successor;
+
+	// the same matrices, when loaded from a file
+	private MappedMatrix mappedDistance;
+	private MappedMatrix mappedPredecessor;
+	private MappedMatrix mappedSuccessor;
+
+	// file format: header (see below) followed by the matrices of distances, predecessors and successors
+	private static final int FILE_MAGIC = 0x59415350;  // "YASP"
+	private static final int FILE_VERSION = 1;
+	private static final int FILE_HEADER_BYTES = 32;   // magic, version, nodes, (unused), graph hash, (unused)
+	private static final int FILE_BUFFER_BYTES = 1 << 20;
 
 	public AllShortestPaths(Graph g) {
 		super(g);
 	}
 	
+	/**
+	 * Computes the shortest paths with the algorithm that is expected to be the fastest
+	 * for the graph.
+	 */
 	public void compute() {
 		int numVertices = graph.getNumNodes();
-
-		distance = new int[numVertices][numVertices];
-		predecessor = new int[numVertices][numVertices];
-		successor = new int[numVertices][numVertices];
+		long numArcs = 0;
+		boolean negativeLength = false;
 
 		for (int v = 0; v < numVertices; v ++) {
-			for (int u = 0; u < numVertices; u++) {
-				if (v == u) {
-					distance[v][u] = 0;
-					predecessor[v][u] = -1;
-					successor  [v][u] = -1;
-				
-				} else if (graph.existsEdge(v, u)) {
-					distance[v][u] = graph.getLength(v,u);
-					predecessor[v][u] = v;
-					successor  [v][u] = u;
-					
-				} else {
-					distance[v][u] = INFINITE;
-					predecessor[v][u] = -1;
-					successor  [v][u] = -1;
+			for (int i = 0; i < graph.getOutDegree(v); i++) {
+				negativeLength |= graph.getOutLength(v, i) < 0;
+			}
+			numArcs += graph.getOutDegree(v);
+		}
+
+		int log2 = 32 - Integer.numberOfLeadingZeros(numVertices);
+
+		if (!negativeLength && numArcs * log2 * DIJKSTRA_FACTOR < (long)numVertices * numVertices) {
+			computeByDijkstra();
+		} else {
+			computeByFloydWarshall();
+		}
+	}
+
+	/**
+	 * Computes the shortest paths with Floyd-Warshall's algorithm.
+	 */
+	public void computeByFloydWarshall() {
+		allocate();
+
+		int n = numNodes;
+		int u, vu;
+		
+		for (int v = 0; v < n; v ++) {
+			for (u = 0; u < n; u++) {
+				distance[v * n + u] = (v == u) ? 0 : INFINITE;
+			}
+			for (int i = 0; i < graph.getOutDegree(v); i++) {
+				u = graph.getOutTarget(v, i);
+				if (u != v) {
+					vu = v * n + u;
+					distance[vu] = Math.min(distance[vu], graph.getOutLength(v, i));
 				}
 			}
 		}
 		
+		computeBlocked();
+
+		new ParallelLoop() {
+			protected void run(int from, int to) {
+				DijkstraRunner runner = new DijkstraRunner(graph);
+				for (int source = from; source < to; source++) {
+					runner.computePaths(source, distance, predecessor, successor, source * numNodes);
+				}
+			}
+		}.execute(0, n, SOURCES_GRAIN);
+	}
+
+	/**
+	 * Computes the shortest paths running Dijkstra's algorithm from each node.
+	 * The graph can't have edges with negative lengths.
+	 */
+	public void computeByDijkstra() {
+		DijkstraRunner.checkLengths(graph);
+
+		allocate();
+
+		new ParallelLoop() {
+			protected void run(int from, int to) {
+				DijkstraRunner runner = new DijkstraRunner(graph);
+				for (int source = from; source < to; source++) {
+					runner.computeDistances(source, distance, source * numNodes);
+					runner.computePaths(source, distance, predecessor, successor, source * numNodes);
+				}
+			}
+		}.execute(0, numNodes, SOURCES_GRAIN);
+	}
+
+	/**
+	 * Loads the shortest paths from the cache file of the graph in the given directory, if
+	 * it exists. Otherwise, computes them (see compute()) and creates the file. The name of 
+	 * the file is given by a hash of the graph's content (see Graph.contentHash()), so the
+	 * file is reused for equal graphs, even if read from different map files.
+	 * <br><br>
+	 * Returns "true" iff the paths were loaded from the file.
+	 */
+	public boolean computeCached(File directory) throws IOException {
+		File file = new File(directory, String.format("asp-%016x.bin", graph.contentHash()));
+
+		if (file.exists()) {
+			try {
+				load(file);
+				return true;
+			} catch (IOException e) {
+				// invalid (or incompatible) file: it will be replaced
+			}
+		}
+
+		compute();
+
+		// writes to a temporary file, so other processes never read an incomplete file
+		File tempFile = File.createTempFile("asp-", ".tmp", directory);
+		try {
+			save(tempFile);
+			if (!tempFile.renameTo(file) && file.exists()) {
+				// in some platforms, renameTo() doesn't replace the file (which may be invalid)
+				file.delete();
+				tempFile.renameTo(file);  // if it fails, another process created the file again
+			}
+		} finally {
+			tempFile.delete();  // only exists if not renamed
+		}
+
+		return false;
+	}
+
+	/**
+	 * Saves the computed shortest paths in a binary file.
+	 */
+	public void save(File file) throws IOException {
+		if (distance == null && mappedDistance == null) {
+			throw new IllegalStateException("Shortest paths not computed");
+		}
+
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_BUFFER_BYTES);
+
+			output.setLength(0);
+
+			buffer.putInt(FILE_MAGIC);
+			buffer.putInt(FILE_VERSION);
+			buffer.putInt(numNodes);
+			buffer.putInt(0);
+			buffer.putLong(graph.contentHash());
+			buffer.putLong(0);
+
+			for (int matrix = 0; matrix < 3; matrix++) {
+				IntBuffer ints = buffer.asIntBuffer();
+				for (int i = 0; i < numNodes; i++) {
+					for (int j = 0; j < numNodes; j++) {
+						if (!ints.hasRemaining()) {
+							buffer.position(buffer.position() + 4 * ints.position());
+							writeBuffer(channel, buffer);
+							ints = buffer.asIntBuffer();
+						}
+						ints.put(matrix == 0 ? distanceAt(i, j) : (matrix == 1 ? predecessorAt(i, j) : successorAt(i, j)));
+					}
+				}
+				buffer.position(buffer.position() + 4 * ints.position());
+			}
+
+			writeBuffer(channel, buffer);
+		}
+	}
+
+	private static void writeBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Loads the shortest paths from a file created with save(), mapping it in memory
+	 * (read-only). Throws IOException if the file was not created for this graph.
+	 */
+	public void load(File file) throws IOException {
+		try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+			FileChannel channel = input.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+
+			while (header.hasRemaining()) {
+				if (channel.read(header) == -1) {
+					throw new IOException("Incomplete header in file " + file);
+				}
+			}
+			header.flip();
+
+			int n = graph.getNumNodes();
+
+			if (header.getInt() != FILE_MAGIC || header.getInt() != FILE_VERSION) {
+				throw new IOException("Not a shortest paths file (or unsupported version): " + file);
+			}
+			if (header.getInt() != n) {
+				throw new IOException("Wrong number of nodes in file " + file);
+			}
+			header.getInt();
+			if (header.getLong() != graph.contentHash()) {
+				throw new IOException("File " + file + " was created for another graph");
+			}
+
+			long matrixBytes = 4L * n * n;
+			if (channel.size() != FILE_HEADER_BYTES + 3 * matrixBytes) {
+				throw new IOException("Wrong size of file " + file);
+			}
+
+			numNodes = n;
+			distance = null;
+			predecessor = null;
+			successor = null;
+			mappedDistance    = new MappedMatrix(channel, FILE_HEADER_BYTES, n, n);
+			mappedPredecessor = new MappedMatrix(channel, FILE_HEADER_BYTES + matrixBytes, n, n);
+			mappedSuccessor   = new MappedMatrix(channel, FILE_HEADER_BYTES + 2 * matrixBytes, n, n);
+		}
+	}
+
+	private void allocate() {
+		int numVertices = graph.getNumNodes();
+
+		if ((long)numVertices * numVertices > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many nodes for the distances matrix: " + numVertices);
+		}
+
+		numNodes = numVertices;
+		mappedDistance = null;
+		mappedPredecessor = null;
+		mappedSuccessor = null;
+		distance = new int[numVertices * numVertices];
+		predecessor = new int[numVertices * numVertices];
+		successor = new int[numVertices * numVertices];
+	}
+
+	// Floyd-Warshall in blocks: for each block of intermediate nodes K, first computes the
+	// block (K,K), then the other blocks in the row K and in the column K, then all the
+	// remaining blocks (in each step, the blocks are independent of each other)
+	private void computeBlocked() {
+		final int numBlocks = (numNodes + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+		for (int kb = 0; kb < numBlocks; kb++) {
+			final int k = kb;
+
+			computeBlock(k, k, k);
+
+			// the blocks in row k and in column k (except (k,k))
+			new ParallelLoop() {
+				protected void run(int from, int to) {
+					for (int b = from; b < to; b++) {
+						int other = (b / 2 < k) ? b / 2 : b / 2 + 1;
+						if (b % 2 == 0) {
+							computeBlock(k, k, other);
+						} else {
+							computeBlock(k, other, k);
+						}
+					}
+				}
+			}.execute(0, 2 * (numBlocks - 1), 1);
+
+			// all the other blocks, by rows of blocks
+			new ParallelLoop() {
+				protected void run(int from, int to) {
+					for (int ib = from; ib < to; ib++) {
+						if (ib != k) {
+							for (int jb = 0; jb < numBlocks; jb++) {
+								if (jb != k) {
+									computeBlock(k, ib, jb);
+								}
+							}
+						}
+					}
+				}
+			}.execute(0, numBlocks, 1);
+		}
+	}
+
+	// relaxes the paths i-->j of the block (ib,jb) using intermediate nodes k of the block kb
+	private void computeBlock(int kb, int ib, int jb) {
+		int n = numNodes;
+		int kEnd = Math.min(n, (kb + 1) * BLOCK_SIZE);
+		int iEnd = Math.min(n, (ib + 1) * BLOCK_SIZE);
+		int jStart = jb * BLOCK_SIZE;
+		int jEnd = Math.min(n, jStart + BLOCK_SIZE);
+
+		int[] dist = this.distance;
+
+		int rowK, rowI, distIK, newDist;
+
 		// escolhe vertice intermediario
-		for (int k = 0; k < numVertices; k++) {
+		for (int k = kb * BLOCK_SIZE; k < kEnd; k++) {
+			rowK = k * n;
 			// escolhe origem
-	  		for (int i = 0; i < numVertices; i++) {
+			for (int i = ib * BLOCK_SIZE; i < iEnd; i++) {
+				rowI = i * n;
+				distIK = dist[rowI + k];
+				if (distIK == INFINITE) {
+					continue;
+				}
 				// escolhe destino
-	    		for (int j = 0; j < numVertices; j++) {
-	    			// se i-->k + k-->j for menor do que o caminho atual i-->j
-	      			if ((distance[i][k] + distance[k][j]) < distance[i][j]) {
-	        			// entao reduz a distancia do caminho i-->j fazendo i-->k-->j
-	        			distance[i][j] = distance[i][k] + distance[k][j];
-	        			
-	        			predecessor[i][j] = predecessor[k][j];
-	        			successor  [i][j] = successor[i][k];
-	      			}
-	    		}
-	  		}
+				for (int j = jStart; j < jEnd; j++) {
+					// se i-->k + k-->j for menor do que o caminho atual i-->j
+					newDist = distIK + dist[rowK + j];
+					if (newDist < dist[rowI + j]) {
+						// entao reduz a distancia do caminho i-->j fazendo i-->k-->j
+						dist[rowI + j] = newDist;
+					}
+				}
+			}
+		}
+	}
+
+	private int distanceAt(int source, int destiny) {
+		if (distance != null) {
+			return distance[source * numNodes + destiny];
+		} else {
+			return mappedDistance.get(source, destiny);
 		}
+	}
 
+	private int predecessorAt(int source, int destiny) {
+		if (predecessor != null) {
+			return predecessor[source * numNodes + destiny];
+		} else {
+			return mappedPredecessor.get(source, destiny);
+		}
 	}
-	
+
+	private int successorAt(int source, int destiny) {
+		if (successor != null) {
+			return successor[source * numNodes + destiny];
+		} else {
+			return mappedSuccessor.get(source, destiny);
+		}
+	}
+
 	/**
 	 * Returns "true" iff there is a path from 'source' to 'destiny'.
 	 */
 	public boolean existsPath(int source, int destiny) {
-		return distance[source][destiny] != INFINITE;
+		return distanceAt(source, destiny) != INFINITE;
 	}
 
 	/**
 	 * Returns the path from 'source' to 'destiny' or null if no such path exists.
 	 */
 	public Path getPath(int source, int destiny) {
-		Path path;
-		
-		if (distance[source][destiny] != INFINITE) {
-			path =  new Path();
-			getPathInternal(source, destiny, path);
-		} else {
-			path = null;
+		IntPath path = getIntPath(source, destiny);
+		return (path == null) ? null : path.toPath();
+	}
+
+	/**
+	 * The same as getPath(), but returns the path as an IntPath.
+	 */
+	public IntPath getIntPath(int source, int destiny) {
+		if (distanceAt(source, destiny) == INFINITE) {
+			return null;
 		}
 
-		return path;
-	}
+		// counts the nodes, then fills the path from the end, following the predecessors
+		int length = 1;
+		for (int node = destiny; node != source; node = predecessorAt(source, node)) {
+			length ++;
+		}
 
-	private void getPathInternal(int source, int destiny, Path path) {
-		if (destiny == source) {
-			path.add(destiny);
-		} else {
-			getPathInternal(source, predecessor[source][destiny], path);
-			path.add(destiny);
+		int[] nodes = new int[length];
+		int node = destiny;
+
+		for (int i = length - 1; i >= 0; i--) {
+			nodes[i] = node;
+			if (i > 0) {
+				node = predecessorAt(source, node);
+			}
 		}
+
+		return new IntPath(nodes);
 	}
 	
 	/**
@@ -98,7 +435,7 @@ public class AllShortestPaths extends GraphAlgorithm {
 	 * Nodes 'source' and 'destiny' can't be the same.
 	 */
 	public int getSourceSuccessor(int source, int destiny) {
-		return successor[source][destiny];
+		return successorAt(source, destiny);
 	}
 	
 	/**
@@ -106,17 +443,18 @@ public class AllShortestPaths extends GraphAlgorithm {
 	 * Nodes 'source' and 'destiny' can't be the same.
 	 */
 	public int getDestinyPredecessor(int source, int destiny) {
-		return predecessor[source][destiny];
+		return predecessorAt(source, destiny);
 	}
 	
 	/**
 	 * Returns the minimum distance from 'source' to 'destiny'.
 	 */
 	public double getDistance(int source, int destiny) {
-		if (distance[source][destiny] == INFINITE) {
+		int dist = distanceAt(source, destiny);
+		if (dist == INFINITE) {
 			return Integer.MAX_VALUE;
 		} else {
-			return distance[source][destiny];
+			return dist;
 		}
 	}
 
@@ -126,13 +464,15 @@ public class AllShortestPaths extends GraphAlgorithm {
 	 * the weights of the edges given by the minimum distance.
 	 */
 	public Graph toDistancesGraph() {
-		int order = this.distance.length;
+		int order = this.numNodes;
 		Graph graph = new Graph(order, GraphDataRepr.MIXED);
+		int dist;
 		
 		for (int v = 0; v < order; v++) {
 			for (int x = 0; x < order; x++) {
-				if (distance[v][x] != INFINITE) {
-					graph.addArc(v, x, distance[v][x]);
+				dist = distanceAt(v, x);
+				if (dist != INFINITE) {
+					graph.addArc(v, x, dist);
 				}
 			}
 		}
@@ -29,7 +29,7 @@ public class ChristofidesTspApproximation extends GraphAlgorithm {
 		
 		int oddNodes = 0;
 		for (int node = 0; node < tree.getNumNodes(); node++) {
-			if (tree.getOutEdges(node).size() % 2 == 1) {
+			if (tree.getOutDegree(node) % 2 == 1) {
 				oddNodes ++;
 			}
 		}
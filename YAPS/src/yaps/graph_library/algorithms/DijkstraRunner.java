@@ -0,0 +1,148 @@
+package yaps.graph_library.algorithms;
+
+import yaps.graph_library.Graph;
+import yaps.util.BinHeapPQueue;
+import yaps.util.PQueue;
+import yaps.util.PQueueElement;
+
+
+/**
+ * Computes the shortest paths from a single source with Dijkstra's algorithm, writing
+ * the results in a row of arrays given by the caller (a row of a matrix stored in a flat
+ * array, or an array of its own). The same instance can be reused for many sources, but
+ * it can't be used by many threads at the same time.
+ * <br><br>
+ * The distances are computed separately from the paths: computePaths() chooses the
+ * predecessors and successors with a breadth-first search in the arcs that are part of
+ * some shortest path, so the paths only depend on the distances (and not on the algorithm
+ * used to compute them).
+ *
+ * @author Pablo A. Sampaio
+ */
+class DijkstraRunner {
+	private static final int INFINITE = GraphAlgorithm.INFINITE;
+
+	private Graph graph;
+	private int numNodes;
+
+	private NodeInfo[] nodeInfo;
+	private boolean[] done;
+	private PQueue<NodeInfo> frontier;
+	private int[] queue;
+
+
+	DijkstraRunner(Graph g) {
+		this.graph = g;
+		this.numNodes = g.getNumNodes();
+	}
+
+	/**
+	 * Throws IllegalArgumentException if the graph has some edge with negative length.
+	 */
+	static void checkLengths(Graph g) {
+		for (int v = 0; v < g.getNumNodes(); v ++) {
+			for (int i = 0; i < g.getOutDegree(v); i++) {
+				if (g.getOutLength(v, i) < 0) {
+					throw new IllegalArgumentException("Negative length in edge from " + v + " to " + g.getOutTarget(v, i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills dist[offset .. offset+n-1] with the distances from the source.
+	 */
+	void computeDistances(int source, int[] dist, int offset) {
+		if (nodeInfo == null) {
+			nodeInfo = new NodeInfo[numNodes];
+			for (int v = 0; v < numNodes; v++) {
+				nodeInfo[v] = new NodeInfo(v);
+			}
+			done = new boolean[numNodes];
+			frontier = new BinHeapPQueue<NodeInfo>(numNodes);
+		}
+
+		int u, v, newDist;
+
+		for (v = 0; v < numNodes; v++) {
+			dist[offset + v] = INFINITE;
+			done[v] = false;
+		}
+
+		dist[offset + source] = 0;
+		nodeInfo[source].distance = 0;
+		frontier.add(nodeInfo[source]);
+
+		while (!frontier.isEmpty()) {
+			u = frontier.removeMinimum().id;
+			done[u] = true;
+
+			for (int i = 0; i < graph.getOutDegree(u); i++) {
+				v = graph.getOutTarget(u, i);
+				newDist = dist[offset + u] + graph.getOutLength(u, i);
+
+				if (!done[v] && newDist < dist[offset + v]) {
+					nodeInfo[v].distance = newDist;
+					if (dist[offset + v] == INFINITE) {
+						frontier.add(nodeInfo[v]);
+					} else {
+						frontier.decreaseKey(nodeInfo[v]);
+					}
+					dist[offset + v] = newDist;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Given the distances from the source in dist[offset .. offset+n-1], fills the same
+	 * positions of 'pred' and 'succ' with the predecessor of each node and with the node
+	 * after the source in the path to each node (-1 for the source and for unreachable
+	 * nodes). Only follows the arcs (u,v) where dist(s,u) + length(u,v) = dist(s,v).
+	 */
+	void computePaths(int source, int[] dist, int[] pred, int[] succ, int offset) {
+		if (queue == null) {
+			queue = new int[numNodes];
+		}
+
+		int head, tail, u, v;
+
+		for (v = 0; v < numNodes; v++) {
+			pred[offset + v] = -1;
+			succ[offset + v] = -1;
+		}
+
+		head = 0;
+		tail = 0;
+		queue[tail++] = source;
+
+		while (head < tail) {
+			u = queue[head++];
+			for (int i = 0; i < graph.getOutDegree(u); i++) {
+				v = graph.getOutTarget(u, i);
+				if (v != source && pred[offset + v] == -1
+						&& dist[offset + u] + graph.getOutLength(u, i) == dist[offset + v]) {
+					pred[offset + v] = u;
+					succ[offset + v] = (u == source) ? v : succ[offset + u];
+					queue[tail++] = v;
+				}
+			}
+		}
+	}
+
+	// classe auxiliar, faz a PQueue ordenar pela distancia
+	class NodeInfo extends PQueueElement {
+		private int id;
+		private int distance;
+
+		NodeInfo(int nodeId) {
+			id = nodeId;
+		}
+
+		@Override
+		public int getKey() {
+			return distance;
+		}
+	}
+
+}
@@ -1,8 +1,5 @@
 package yaps.graph_library.algorithms;
 
-import java.util.List;
-
-import yaps.graph_library.Edge;
 import yaps.graph_library.Graph;
 
 
@@ -78,12 +75,9 @@ public class EdgeConnectivity extends GraphAlgorithm {
 		int numVertices = g.getNumNodes();
 		Graph gu = new Graph(numVertices);
 
-		List<Edge> outEdges;
-		
 		for (int v = 0; v < numVertices; v++) {
-			outEdges = g.getOutEdges(v);
-			for (Edge e : outEdges) {
-				gu.addArc(v, e.getTarget(), 1);
+			for (int i = 0; i < g.getOutDegree(v); i++) {
+				gu.addArc(v, g.getOutTarget(v, i), 1);
 			}
 		}
 		
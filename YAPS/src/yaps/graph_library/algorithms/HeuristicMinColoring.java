@@ -1,7 +1,5 @@
 package yaps.graph_library.algorithms;
 
-import java.util.LinkedList;
-
 import yaps.graph_library.Graph;
 import yaps.util.BinHeapPQueue;
 import yaps.util.PQueue;
@@ -18,6 +16,8 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 	private int maxColor;
 	private int[] coloring;
 	
+	private int[] colorMarks; // used to find the minimum color free in the neighborhood
+	
 	private static int NOT_COLORED   =  0; // vertex not colored and not reached by the algorithm 
 	private static int TO_BE_COLORED = -1; // vertex not colored but already reached
 
@@ -53,10 +53,13 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 		for (int i = 0; i < numVertices; i++) {
 			coloring[i] = NOT_COLORED;
 		}
+		initColorMarks();
+		
+		int[] queue = new int[numVertices]; //each node enters the queue only once
 		
 		for (int start = 0; start < numVertices; start++) {
 			if (coloring[start] == NOT_COLORED) {
-				bfsColoringInternal(start);
+				bfsColoringInternal(start, queue);
 			}
 		}
 		
@@ -64,16 +67,15 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 	}
 	
 	// faz a pesquisa em largura a partir do vrtice "start" 
-	private void bfsColoringInternal(int start) {
-		int v;
-		
-		LinkedList<Integer> queue = new LinkedList<Integer>(); 
+	private void bfsColoringInternal(int start, int[] queue) {
+		int v, neighbor;
+		int head = 0, tail = 0;
 		
-		queue.add(start);
+		queue[tail++] = start;
 		coloring[start] = TO_BE_COLORED;
 		
-		while (! queue.isEmpty()) {
-			v = queue.pollFirst();
+		while (head < tail) {
+			v = queue[head++];
 			
 			coloring[v] = giveMinColor(v);
 			
@@ -81,9 +83,10 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 				maxColor = coloring[v];
 			}
 			
-			for (Integer neighbor : graph.getSuccessors(v)) {
+			for (int i = 0; i < graph.getOutDegree(v); i++) {
+				neighbor = graph.getOutTarget(v, i);
 				if (coloring[neighbor] == NOT_COLORED) {
-					queue.add(neighbor);
+					queue[tail++] = neighbor;
 					coloring[neighbor] = TO_BE_COLORED;
 				}
 			}
@@ -95,27 +98,36 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 	// como cores. A cor escolhida (e retornada)  o menor nmero que
 	// no causa choque com os vizinhos
 	private int giveMinColor(int v) {
-		int color = 0;
-		boolean colorIsUnique;
+		int degree = graph.getOutDegree(v);
+		int mark = v + 1;  // marks the colors of the neighbors of "v" (no need to clear the array)
+		int neighborColor;
 		
-		//ideia: criar array de boolean das cores usadas e escolher a menor posicao nao usada
-		
-		do {
-			color ++;			
-			colorIsUnique = true;
-
-			for (Integer neighbor : graph.getSuccessors(v)) {
-				if (coloring[neighbor] == color) {
-					colorIsUnique = false;
-					break;
-				}
+		// the minimum free color is at most (degree+1)
+		for (int i = 0; i < degree; i++) {
+			neighborColor = coloring[graph.getOutTarget(v, i)];
+			if (neighborColor > 0 && neighborColor <= degree + 1) {
+				colorMarks[neighborColor] = mark;
 			}
+		}
 		
-		} while (!colorIsUnique);
+		int color = 1;
+		while (colorMarks[color] == mark) {
+			color ++;
+		}
 		
 		return color;
 	}
 	
+	private void initColorMarks() {
+		int maxDegree = 0;
+		for (int v = 0; v < graph.getNumNodes(); v++) {
+			if (graph.getOutDegree(v) > maxDegree) {
+				maxDegree = graph.getOutDegree(v);
+			}
+		}
+		colorMarks = new int[maxDegree + 2];
+	}
+	
 	/**
 	 * Colorao sequencial em que so coloridos primeiro os vrtices
 	 * com menos vizinhos no-coloridos.
@@ -127,14 +139,15 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 		NodeInfo[] vertices = new NodeInfo[graph.getNumNodes()];
 		
 		for (int v = 0; v < graph.getNumNodes(); v++) {
-			vertices[v] = new NodeInfo(v, graph.getOutEdges(v).size());			
+			vertices[v] = new NodeInfo(v, graph.getOutDegree(v));			
 			frontier.add(vertices[v]);
 		}
 
 		coloring = new int[graph.getNumNodes()]; // initialized with zero (an invalid color)
 		maxColor = 0;
+		initColorMarks();
 		
-		int v;
+		int v, neighbor;
 
 		while (! frontier.isEmpty()) {
 			v = frontier.removeMinimum().id;
@@ -145,7 +158,8 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 				maxColor = coloring[v];
 			}
 
-			for (Integer neighbor : graph.getSuccessors(v)) {
+			for (int i = 0; i < graph.getOutDegree(v); i++) {
+				neighbor = graph.getOutTarget(v, i);
 				if (coloring[neighbor] == 0) {
 					vertices[neighbor].remainingDegree --;
 					frontier.decreaseKey(vertices[neighbor]);
@@ -172,9 +186,10 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 		NodeInfo[] vertices = new NodeInfo[numVertices];
 
 		for (int v = 0; v < coloring.length; v++) {
-			vertices[v] = new NodeInfo(v, graph.getOutEdges(v).size());
+			vertices[v] = new NodeInfo(v, graph.getOutDegree(v));
 			coloring[v] = NOT_COLORED;
 		}
+		initColorMarks();
 		
 		NodeInfo start;
 		int unvisited = numVertices;
@@ -197,7 +212,7 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 	
 	// usado por leastConstrainedFirstColoringX
 	private int leastConstrainedFirstColoringXInternal(NodeInfo start, NodeInfo[] vertices, int unvisited) {
-		int v;
+		int v, neighbor;
 		PQueue<NodeInfo> frontier = new BinHeapPQueue<NodeInfo>(unvisited);
 		
 		frontier.add(start);
@@ -213,7 +228,8 @@ public class HeuristicMinColoring extends GraphAlgorithm {
 				maxColor = coloring[v];
 			}
 
-			for (Integer neighbor : graph.getSuccessors(v)) {
+			for (int i = 0; i < graph.getOutDegree(v); i++) {
+				neighbor = graph.getOutTarget(v, i);
 				vertices[neighbor].remainingDegree --;
 
 				if (coloring[neighbor] == NOT_COLORED) {
@@ -0,0 +1,48 @@
+package yaps.graph_library.algorithms;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A read-only matrix of integers kept in a file, accessed through memory-mapped buffers.
+ * Since a single buffer can't map more than 2 GB, the matrix is mapped in segments with
+ * many complete rows each. The pages are loaded on demand by the operating system and are
+ * shared by all the processes that map the same file.
+ *
+ * @author Pablo A. Sampaio
+ */
+class MappedMatrix {
+	private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+	private final int numCols;
+	private final int rowsPerSegment;
+	private final IntBuffer[] segments;
+
+
+	/**
+	 * Maps the matrix (rows x cols) that starts in the given position of the file.
+	 * The buffers remain valid after the channel is closed.
+	 */
+	MappedMatrix(FileChannel channel, long offset, int rows, int cols) throws IOException {
+		long rowBytes = 4L * Math.max(1, cols);
+
+		this.numCols = cols;
+		this.rowsPerSegment = (int)Math.max(1, MAX_SEGMENT_BYTES / rowBytes);
+		this.segments = new IntBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+
+		int segmentRows;
+
+		for (int s = 0; s < segments.length; s++) {
+			segmentRows = Math.min(rowsPerSegment, rows - s * rowsPerSegment);
+			segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, offset, segmentRows * rowBytes).asIntBuffer();
+			offset += segmentRows * rowBytes;
+		}
+	}
+
+	int get(int row, int col) {
+		return segments[row / rowsPerSegment].get((row % rowsPerSegment) * numCols + col);
+	}
+
+}
@@ -60,8 +60,8 @@ public class MaximumBipartiteMatching extends GraphAlgorithm {
 		for (int node = 0; node < numNodes; node++) {
 			if (coloring.getColor(node) == 1) {
 				augmentedGraph.addArc(source, node, 1);			
-				for (Edge e : this.graph.getOutEdges(node)) {
-					augmentedGraph.addArc(node, e.getTarget(), 1);
+				for (int i = 0; i < this.graph.getOutDegree(node); i++) {
+					augmentedGraph.addArc(node, this.graph.getOutTarget(node, i), 1);
 				}
 			} else {
 				augmentedGraph.addArc(node, sink, 1);
@@ -78,10 +78,10 @@ public class MaximumBipartiteMatching extends GraphAlgorithm {
 		List<Edge> matchs = new ArrayList<>(this.numMatches);
 		int target;
 		for (int node = 0; node < numNodes; node++) {
-			for (Edge e : flowGraph.getOutEdges(node)) {
-				target = e.getTarget();
+			for (int i = 0; i < flowGraph.getOutDegree(node); i++) {
+				target = flowGraph.getOutTarget(node, i);
 				if (target != sink) {
-					matchs.add(new Edge(node, e.getTarget()));
+					matchs.add(new Edge(node, target));
 				}
 			}
 		}
@@ -114,8 +114,8 @@ public class MaximumBipartiteMatching extends GraphAlgorithm {
 			if (coloring.getColor(v) == 1) {
 				capacity[fonte][v] = 1;
 				
-				for (Edge e : graph.getOutEdges(v)) {
-					capacity[v][e.getTarget()] = 1;
+				for (int i = 0; i < graph.getOutDegree(v); i++) {
+					capacity[v][graph.getOutTarget(v, i)] = 1;
 				}
 				
 			} else {
@@ -3,7 +3,6 @@ package yaps.graph_library.algorithms;
 import yaps.graph_library.*;
 
 import java.util.LinkedList;
-import java.util.List;
 
 
 /**
@@ -81,11 +80,9 @@ public class MaximumFlow extends GraphAlgorithm {
 			auxInflow = new int[numNodes];
 		}
  
-		List<Edge> outV;
 		for (int v = 0; v < numNodes; v++) {
-			outV = graph.getOutEdges(v);
-			for (Edge edge : outV) {
-				residualCapacity[v][edge.getTarget()] = (int)edge.getLength();
+			for (int i = 0; i < graph.getOutDegree(v); i++) {
+				residualCapacity[v][graph.getOutTarget(v, i)] = graph.getOutLength(v, i);
 				//TODO: guardar listas de predecessores aqui?
 			}
 		}
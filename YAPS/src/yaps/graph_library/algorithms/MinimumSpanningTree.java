@@ -1,6 +1,5 @@
 package yaps.graph_library.algorithms;
 
-import yaps.graph_library.Edge;
 import yaps.graph_library.Graph;
 import yaps.graph_library.GraphDataRepr;
 import yaps.util.BinHeapPQueue;
@@ -47,7 +46,7 @@ public class MinimumSpanningTree extends GraphAlgorithm {
 		}
 		//System.out.printf("\n[PRIM, root=%d]\n", root);
 
-		int u;
+		int u, neighbor;
 		int edgeCost;
 
 		this.mcsTreeCost = 0.0d;
@@ -64,9 +63,9 @@ public class MinimumSpanningTree extends GraphAlgorithm {
 	    		//System.out.printf("   - INSERIDA: (%d,%d), peso: %5.2f\n", nodeInfo[u].parent, u, edgeCost);
 	    	}
 
-	    	for (Edge edge : graph.getOutEdges(u)) {
-	    		int neighbor = edge.getTarget();
-				edgeCost = edge.getLength();
+	    	for (int i = 0; i < graph.getOutDegree(u); i++) {
+	    		neighbor = graph.getOutTarget(u, i);
+				edgeCost = graph.getOutLength(u, i);
 
 	    		if (!chosen[neighbor] && (edgeCost < nodeInfo[neighbor].costToLink)) {
 	    			nodeInfo[neighbor].changeLink(u, edgeCost);
@@ -0,0 +1,165 @@
+package yaps.graph_library.algorithms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import yaps.graph_library.Graph;
+import yaps.graph_library.IntPath;
+import yaps.graph_library.Path;
+
+
+/**
+ * Answers shortest paths queries computing the paths from each source only when
+ * they are needed (with Dijkstra's algorithm). The results of the most recently used
+ * sources are kept in a cache (LRU policy) limited by a memory budget.
+ * <br><br>
+ * Each source uses 12*n bytes, so this class can be used in graphs too large for
+ * AllShortestPaths (which uses 12*n^2 bytes). The answers are the same given by
+ * AllShortestPaths. The graph can't have edges with negative lengths and it can't
+ * be changed while the oracle is used.
+ * <br><br>
+ * The methods are thread-safe.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class ShortestPathOracle extends GraphAlgorithm implements ShortestPaths {
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	private final int maxCachedRows;
+	private final LinkedHashMap<Integer, Row> cache;
+	private final DijkstraRunner runner;
+
+
+	public ShortestPathOracle(Graph g) {
+		this(g, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Creates an oracle that uses (approximately) at most 'memoryBudget' bytes to keep
+	 * the computed paths. At least one source is always kept.
+	 */
+	public ShortestPathOracle(Graph g, long memoryBudget) {
+		super(g);
+		DijkstraRunner.checkLengths(g);
+
+		long rowBytes = 12L * Math.max(1, g.getNumNodes());
+		this.maxCachedRows = (int)Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / rowBytes));
+		this.runner = new DijkstraRunner(g);
+
+		this.cache = new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+				return size() > maxCachedRows;
+			}
+		};
+	}
+
+	/**
+	 * Maximum number of sources whose paths are kept in the cache.
+	 */
+	public int getMaxCachedRows() {
+		return maxCachedRows;
+	}
+
+	/**
+	 * Number of sources whose paths are currently in the cache.
+	 */
+	public synchronized int getCachedRows() {
+		return cache.size();
+	}
+
+	/**
+	 * Discards all the paths kept in the cache.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	// returns the paths from the source, computing them if they are not in the cache
+	private synchronized Row getRow(int source) {
+		Row row = cache.get(source);
+
+		if (row == null) {
+			int n = graph.getNumNodes();
+			row = new Row(n);
+			runner.computeDistances(source, row.distance, 0);
+			runner.computePaths(source, row.distance, row.predecessor, row.successor, 0);
+			cache.put(source, row);
+		}
+
+		return row;
+	}
+
+	@Override
+	public boolean existsPath(int source, int destiny) {
+		return getRow(source).distance[destiny] != INFINITE;
+	}
+
+	@Override
+	public Path getPath(int source, int destiny) {
+		IntPath path = getIntPath(source, destiny);
+		return (path == null) ? null : path.toPath();
+	}
+
+	@Override
+	public IntPath getIntPath(int source, int destiny) {
+		Row row = getRow(source);
+
+		if (row.distance[destiny] == INFINITE) {
+			return null;
+		}
+
+		int length = 1;
+		for (int node = destiny; node != source; node = row.predecessor[node]) {
+			length ++;
+		}
+
+		int[] nodes = new int[length];
+		int node = destiny;
+
+		for (int i = length - 1; i >= 0; i--) {
+			nodes[i] = node;
+			if (i > 0) {
+				node = row.predecessor[node];
+			}
+		}
+
+		return new IntPath(nodes);
+	}
+
+	@Override
+	public int getSourceSuccessor(int source, int destiny) {
+		return getRow(source).successor[destiny];
+	}
+
+	@Override
+	public int getDestinyPredecessor(int source, int destiny) {
+		return getRow(source).predecessor[destiny];
+	}
+
+	@Override
+	public double getDistance(int source, int destiny) {
+		int dist = getRow(source).distance[destiny];
+		if (dist == INFINITE) {
+			return Integer.MAX_VALUE;
+		} else {
+			return dist;
+		}
+	}
+
+	// the paths from one source (the arrays are never changed after computed)
+	private static class Row {
+		final int[] distance;
+		final int[] predecessor;
+		final int[] successor;
+
+		Row(int numNodes) {
+			distance = new int[numNodes];
+			predecessor = new int[numNodes];
+			successor = new int[numNodes];
+		}
+	}
+
+}
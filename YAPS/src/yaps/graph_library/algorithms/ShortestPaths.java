@@ -0,0 +1,49 @@
+package yaps.graph_library.algorithms;
+
+import yaps.graph_library.IntPath;
+import yaps.graph_library.Path;
+
+
+/**
+ * Answers queries about the shortest paths between pairs of nodes of a graph.
+ * See AllShortestPaths (all the paths computed in advance) and ShortestPathOracle
+ * (paths computed on demand).
+ *
+ * @author Pablo A. Sampaio
+ */
+public interface ShortestPaths {
+
+	/**
+	 * Returns "true" iff there is a path from 'source' to 'destiny'.
+	 */
+	public boolean existsPath(int source, int destiny);
+
+	/**
+	 * Returns the path from 'source' to 'destiny' or null if no such path exists.
+	 */
+	public Path getPath(int source, int destiny);
+
+	/**
+	 * The same as getPath(), but returns the path as an IntPath.
+	 */
+	public IntPath getIntPath(int source, int destiny);
+
+	/**
+	 * Returns the node immediately after 'source' in the minimum-cost path from 'source' to 'destiny'.
+	 * Nodes 'source' and 'destiny' can't be the same.
+	 */
+	public int getSourceSuccessor(int source, int destiny);
+
+	/**
+	 * Returns the node immediately before 'destiny' in the minimum-cost path from 'source' to 'destiny'.
+	 * Nodes 'source' and 'destiny' can't be the same.
+	 */
+	public int getDestinyPredecessor(int source, int destiny);
+
+	/**
+	 * Returns the minimum distance from 'source' to 'destiny', or Integer.MAX_VALUE
+	 * if no path exists.
+	 */
+	public double getDistance(int source, int destiny);
+
+}
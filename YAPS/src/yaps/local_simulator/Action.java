@@ -1,7 +1,49 @@
 package yaps.local_simulator;
 
-public class Action {	
-	ActionType type;
-	String parameter1;
-	String parameter2;
+
+/**
+ * An action chosen by an agent, when it is in a node (see Agent.decide()). Only the
+ * actions to move are supported by now:
+ * <ul>
+ * <li> GO_TO: go to an adjacent node, through the edge from the current node to it;
+ * <li> GO_THROUGH: go through an edge (given by its identifier) that leaves the current node.
+ * </ul>
+ * The actions are immutable, so an agent can keep and return the same action many times.
+ * To avoid creating objects in each turn, the agents may also write their actions directly
+ * in an ActionBuffer.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class Action {
+	final ActionType type;
+	final int target;   // the node (in GO_TO) or the edge (in GO_THROUGH)
+
+	Action(ActionType type, int target) {
+		this.type = type;
+		this.target = target;
+	}
+
+	public static Action goTo(int node) {
+		return new Action(ActionType.GO_TO, node);
+	}
+
+	public static Action goThrough(int edge) {
+		return new Action(ActionType.GO_THROUGH, edge);
+	}
+
+	public ActionType getType() {
+		return type;
+	}
+
+	/**
+	 * The node (in GO_TO) or the identifier of the edge (in GO_THROUGH).
+	 */
+	public int getTarget() {
+		return target;
+	}
+
+	public String toString() {
+		return type + "(" + target + ")";
+	}
+
 }
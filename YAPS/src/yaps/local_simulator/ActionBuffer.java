@@ -0,0 +1,121 @@
+package yaps.local_simulator;
+
+
+/**
+ * The actions chosen by the agents in a turn, kept in arrays of primitive values (with
+ * one position for each agent): the codes of the types of the actions (see encodeType())
+ * and their targets. The simulator creates one buffer and reuses it in all
+ * the turns, so agents that write their decisions directly in the buffer (see
+ * Agent.decide(SelfPerception, GraphPerception, ActionBuffer)) don't allocate objects.
+ * <br><br>
+ * Each agent must only write in its own position, so that many agents can decide
+ * concurrently.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class ActionBuffer {
+	private static final ActionType[] TYPES = ActionType.values();
+
+	/**
+	 * Code of the action "stay" (see encodeType()).
+	 */
+	public static final int STAY_CODE = 0;
+
+	private static final int GO_TO_CODE = encodeType(ActionType.GO_TO);
+	private static final int GO_THROUGH_CODE = encodeType(ActionType.GO_THROUGH);
+
+	private final int[] codes;   // STAY_CODE means "stay in the node"
+	private final int[] targets;
+
+	public ActionBuffer(int numAgents) {
+		this.codes = new int[numAgents];
+		this.targets = new int[numAgents];
+	}
+
+	public int size() {
+		return codes.length;
+	}
+
+	/**
+	 * The agent stays in the current node.
+	 */
+	public void stay(int agent) {
+		codes[agent] = STAY_CODE;
+	}
+
+	public void goTo(int agent, int node) {
+		codes[agent] = GO_TO_CODE;
+		targets[agent] = node;
+	}
+
+	public void goThrough(int agent, int edge) {
+		codes[agent] = GO_THROUGH_CODE;
+		targets[agent] = edge;
+	}
+
+	/**
+	 * Copies the action, or stays if it is null.
+	 */
+	public void set(int agent, Action action) {
+		if (action == null) {
+			codes[agent] = STAY_CODE;
+		} else {
+			codes[agent] = encodeType(action.type);
+			targets[agent] = action.target;
+		}
+	}
+
+	/**
+	 * Sets the action given by its type and target. A null type means to stay.
+	 */
+	public void set(int agent, ActionType type, int target) {
+		codes[agent] = encodeType(type);
+		targets[agent] = target;
+	}
+
+	public boolean isStay(int agent) {
+		return codes[agent] == STAY_CODE;
+	}
+
+	/**
+	 * The type of the action of the agent, or null if it stays.
+	 */
+	public ActionType getType(int agent) {
+		return (codes[agent] == STAY_CODE) ? null : TYPES[codes[agent] - 1];
+	}
+
+	public int getTarget(int agent) {
+		return targets[agent];
+	}
+
+	/**
+	 * Returns an integer code for the type of action, used in binary formats: STAY_CODE
+	 * for null (stay), or the ordinal of the type plus one.
+	 */
+	public static int encodeType(ActionType type) {
+		return (type == null) ? STAY_CODE : type.ordinal() + 1;
+	}
+
+	/**
+	 * Returns the type of action given by the code (see encodeType()), or null for STAY_CODE.
+	 */
+	public static ActionType decodeType(int code) {
+		if (code == STAY_CODE) {
+			return null;
+		} else if (code < 0 || code > TYPES.length) {
+			throw new IllegalArgumentException("Invalid code of action: " + code);
+		}
+		return TYPES[code - 1];
+	}
+
+	/**
+	 * Returns the action of the agent as an object, or null if it stays.
+	 */
+	public Action get(int agent) {
+		if (codes[agent] == STAY_CODE) {
+			return null;
+		}
+		return new Action(getType(agent), targets[agent]);
+	}
+
+}
@@ -0,0 +1,39 @@
+package yaps.local_simulator;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+
+
+/**
+ * Runs the decisions of the agents for the LocalSimulator (see LocalSimulator.setAgentRuntime()).
+ * In each turn, the simulator updates the perceptions of all the agents that are in nodes,
+ * then asks for all their decisions at once. So, the runtime may run the decisions
+ * concurrently, as they only see the state of the simulation in the beginning of the turn.
+ *
+ * @author Pablo A. Sampaio
+ */
+public interface AgentRuntime {
+
+	/**
+	 * Called once, before the first turn. The arrays are indexed by the identifiers of
+	 * the agents, and the perceptions are updated by the simulator before each call to
+	 * decideAll().
+	 */
+	public void start(Agent[] agents, SelfPerception[] selfPerceptions, GraphPerception graphPerception);
+
+	/**
+	 * Calls Agent.decide(SelfPerception, GraphPerception, ActionBuffer) for the agents 
+	 * agentIds[0..count-1], with the given buffer. It must block until all the decisions
+	 * are done. If some decision fails, it must throw the exception of the first one (in
+	 * the order of agentIds).
+	 */
+	public void decideAll(int[] agentIds, int count, ActionBuffer actions);
+
+	/**
+	 * Called once, at the end of the simulation (even if it fails). It is also called if
+	 * start() fails, so it must release the resources of a partial start.
+	 */
+	public void stop();
+
+}
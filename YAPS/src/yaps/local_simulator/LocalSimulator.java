@@ -1,37 +1,563 @@
 package yaps.local_simulator;
 
-import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+import yaps.graph_library.Graph;
+import yaps.metrics.core.VisitListener;
+import yaps.util.BinHeapPQueue;
+import yaps.util.PQueueElement;
 
 
 /**
  * A turn-based local simulator.
- *  
+ * <br><br>
+ * In the beginning (time 0), each agent visits its start node. Then, in each turn t
+ * (from 0 to totalTurns-1):
+ * <ol>
+ * <li> each agent that is in a node chooses its next action (see Agent.decide());
+ * <li> each agent that is in an edge walks one unit of length; the agents that reach the
+ *      end of the edge visit its target node, in time t+1.
+ * </ol>
+ * So, an agent that takes an edge of length L in time t visits the next node in time t+L
+ * (edges with length less than 1 take one turn). The visits are given to a VisitListener
+ * in order of time (and of the agents, in the same time).
+ * <br><br>
+ * The state of the agents is kept in arrays of primitive values and the perceptions are
+ * created once. The actions are written by the agents in an ActionBuffer, also created
+ * once, so the turns don't allocate objects (unless the agents do, e.g. returning new
+ * Action objects in Agent.decide()). The adjacencies of the graph are copied to arrays
+ * in the constructor.
+ * <br><br>
+ * In the discrete-event mode (see setEventDriven()), the simulator doesn't tick the agents
+ * in every turn. Instead, the next event of each agent (an arrival in a node, or a decision
+ * of an agent that stayed in its node) is kept in a priority queue, and the clock jumps
+ * directly to the time of the next event. It is much faster when the edges are long, and
+ * it gives exactly the same visits (in the same order) of the turn-based mode.
+ * <br><br>
+ * The turn-based mode can also run with many threads (see setNumThreads()). The agents
+ * are split in blocks of consecutive identifiers, one for each thread, and each thread
+ * asks its agents for their decisions and moves them. At the end of each turn, the threads
+ * wait in a barrier, and the arrivals are given as visits to the listener (in order of the
+ * agents, in a single thread). As the decisions only see the visits of the previous turns,
+ * the visits are exactly the same of the single-threaded simulation, for any number of
+ * threads. This mode requires the agents to be independent from each other (e.g. not
+ * sharing random number generators), because they decide concurrently.
+ * <br><br>
+ * Finally, the decisions can be delegated to an AgentRuntime (see setAgentRuntime()),
+ * e.g. to run each agent in its own thread. The simulation is turn-based and single-threaded,
+ * and the runtime is asked for all the decisions of each turn at once.
+ *
  * @author Pablo A. Sampaio
  */
 public class LocalSimulator extends Thread {
 	private int currentTurn;
 	private int totalTurns;
-	
-	private List<AgentInfo> agents;
 
+	private Agent[] agents;
+	private int numAgents;
+	private VisitListener listener;
+
+	// adjacencies of the graph: the edges leaving node v are in positions offsets[v] .. offsets[v+1]-1
+	private int[] outOffsets;
+	private int[] outTargets;
+	private int[] outLengths;
+	private int[] outEdgeIds;
+
+	// state of the agents
+	private int[] agentNode;       // current node or, if in an edge, the target node
+	private int[] previousNode;    // last node visited before the current one (or -1)
+	private int[] agentEdge;       // current edge, or -1 if in a node
+	private int[] departureTurn;   // when the agent entered the current edge
+	private int[] arrivalTurn;     // when the agent will reach the end of the current edge
+
+	private long[] lastVisits;     // of each node
+	private SelfPerception[] selfPerceptions;
+	private GraphPerception graphPerception;
+	private ActionBuffer actions;
+
+	private boolean eventDriven;
+	private int numThreads;
+	private AgentRuntime runtime;
+	private RuntimeException failure;
+
+
+	public LocalSimulator(Graph graph, int totalTurns, Agent[] agents, int[] startNodes, VisitListener listener) {
+		if (agents.length != startNodes.length) {
+			throw new IllegalArgumentException("Wrong number of start nodes: " + startNodes.length);
+		}
+		this.totalTurns = totalTurns;
+		this.agents = agents.clone();
+		this.numAgents = agents.length;
+		this.listener = listener;
+		this.numThreads = 1;
+
+		copyAdjacencies(graph);
+
+		this.agentNode = startNodes.clone();
+		this.previousNode = new int[numAgents];
+		this.agentEdge = new int[numAgents];
+		this.departureTurn = new int[numAgents];
+		this.arrivalTurn = new int[numAgents];
+		this.selfPerceptions = new SelfPerception[numAgents];
+		this.actions = new ActionBuffer(numAgents);
+
+		for (int a = 0; a < numAgents; a++) {
+			if (startNodes[a] < 0 || startNodes[a] >= graph.getNumNodes()) {
+				throw new IllegalArgumentException("Invalid start node of agent " + a + ": " + startNodes[a]);
+			}
+			previousNode[a] = -1;
+			agentEdge[a] = -1;
+			selfPerceptions[a] = new SelfPerception(a);
+		}
+
+		this.lastVisits = new long[graph.getNumNodes()];
+		this.graphPerception = new GraphPerception(graph, lastVisits);
+	}
+
+	private void copyAdjacencies(Graph graph) {
+		int n = graph.getNumNodes();
+
+		outOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			outOffsets[v + 1] = outOffsets[v] + graph.getOutDegree(v);
+		}
+
+		outTargets = new int[outOffsets[n]];
+		outLengths = new int[outOffsets[n]];
+		outEdgeIds = new int[outOffsets[n]];
+
+		for (int v = 0; v < n; v++) {
+			for (int i = 0, pos = outOffsets[v]; pos < outOffsets[v + 1]; i++, pos++) {
+				outTargets[pos] = graph.getOutTarget(v, i);
+				outLengths[pos] = Math.max(1, graph.getOutLength(v, i));
+				outEdgeIds[pos] = graph.getOutEdgeId(v, i);
+			}
+		}
+	}
+
+	/**
+	 * If true, the simulation will run in the discrete-event mode (see the class
+	 * description). Default: false.
+	 */
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+	}
+
+	public boolean isEventDriven() {
+		return eventDriven;
+	}
+
+	/**
+	 * Sets the number of threads used to run the turns (the current thread and 
+	 * numThreads-1 worker threads). It is ignored in the discrete-event mode, which
+	 * always runs in a single thread. Default: 1.
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Invalid number of threads: " + numThreads);
+		}
+		this.numThreads = numThreads;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the runtime that will run the decisions of the agents, or null to call the
+	 * agents directly (default). It is only supported in the turn-based mode with a single
+	 * thread.
+	 */
+	public void setAgentRuntime(AgentRuntime runtime) {
+		this.runtime = runtime;
+	}
+
+	/**
+	 * Runs the simulation in the thread (see simulate()). If the simulation ends with an
+	 * exception, it is kept and returned by getFailure().
+	 */
 	@Override
-	public void run() {		
-		
-		// processar mensagens
-		// para cada ao, enviar mensagem de status para o agente ?
-		
+	public void run() {
+		try {
+			simulate();
+		} catch (RuntimeException e) {
+			failure = e;
+		}
 	}
 
-}
+	/**
+	 * Runs the simulation in the current thread.
+	 */
+	public void simulate() {
+		if (runtime != null && (eventDriven || numThreads > 1)) {
+			throw new IllegalStateException("An agent runtime requires the turn-based mode with a single thread");
+		}
+
+		if (runtime != null) {
+			try {
+				runtime.start(agents, selfPerceptions, graphPerception);
+				simulateTurns();
+			} finally {
+				runtime.stop();
+			}
+		} else if (eventDriven) {
+			simulateEvents();
+		} else if (Math.min(numThreads, numAgents) > 1) {
+			simulateTurnsInParallel(Math.min(numThreads, numAgents));
+		} else {
+			simulateTurns();
+		}
+	}
+
+	private void simulateTurns() {
+		for (int a = 0; a < numAgents; a++) {
+			visit(0, agentNode[a], a);
+		}
+
+		int[] deciding = (runtime == null) ? null : new int[numAgents];
+
+		for (currentTurn = 0; currentTurn < totalTurns; currentTurn++) {
+			if (runtime == null) {
+				for (int a = 0; a < numAgents; a++) {
+					if (agentEdge[a] == -1) {
+						decide(a, currentTurn);
+					}
+				}
+			} else {
+				decideWithRuntime(currentTurn, deciding);
+			}
+
+			for (int a = 0; a < numAgents; a++) {
+				if (agentEdge[a] != -1 && arrivalTurn[a] == currentTurn + 1) {
+					agentEdge[a] = -1;
+					visit(currentTurn + 1, agentNode[a], a);
+				}
+			}
+		}
+	}
+
+	// asks the runtime for the decisions of all the agents in nodes, then starts the actions in order
+	private void decideWithRuntime(int turn, int[] deciding) {
+		int count = 0;
+		for (int a = 0; a < numAgents; a++) {
+			if (agentEdge[a] == -1) {
+				selfPerceptions[a].update(turn, agentNode[a], previousNode[a]);
+				actions.stay(a);
+				deciding[count++] = a;
+			}
+		}
+
+		runtime.decideAll(deciding, count, actions);
+
+		for (int i = 0; i < count; i++) {
+			int a = deciding[i];
+			startAction(a, turn);
+		}
+	}
+
+	private void simulateTurnsInParallel(int threads) {
+		for (int a = 0; a < numAgents; a++) {
+			visit(0, agentNode[a], a);
+		}
+
+		final TurnWorker[] workers = new TurnWorker[threads];
+		for (int w = 0; w < threads; w++) {
+			workers[w] = new TurnWorker(w * numAgents / threads, (w + 1) * numAgents / threads);
+		}
+
+		// runs in one thread, after all the workers end the turn
+		final CyclicBarrier barrier = new CyclicBarrier(threads, new Runnable() {
+			public void run() {
+				endParallelTurn(workers);
+			}
+		});
+		for (TurnWorker worker : workers) {
+			worker.barrier = barrier;
+		}
+
+		Thread[] workerThreads = new Thread[threads - 1];
+		for (int w = 1; w < threads; w++) {
+			workerThreads[w - 1] = new Thread(workers[w], getName() + "-worker-" + w);
+			workerThreads[w - 1].start();
+		}
+
+		currentTurn = 0;
+		workers[0].run();
+
+		for (Thread thread : workerThreads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting the worker threads", e);
+			}
+		}
+
+		// the first failure, in order of the workers (and of the agents)
+		for (TurnWorker worker : workers) {
+			if (worker.failure != null) {
+				throw worker.failure;
+			}
+		}
+	}
 
+	// if some worker failed, stops the simulation; else, gives the visits in order of the agents
+	private void endParallelTurn(TurnWorker[] workers) {
+		for (TurnWorker worker : workers) {
+			if (worker.failure != null) {
+				stopWorkers(workers);
+				return;
+			}
+		}
+		try {
+			for (TurnWorker worker : workers) {
+				for (int i = 0; i < worker.numArrivals; i++) {
+					int a = worker.arrivals[i];
+					visit(currentTurn + 1, agentNode[a], a);
+				}
+			}
+		} catch (RuntimeException e) {
+			workers[0].failure = e;
+			stopWorkers(workers);
+			return;
+		}
+		currentTurn ++;
+	}
+
+	private void stopWorkers(TurnWorker[] workers) {
+		for (TurnWorker worker : workers) {
+			worker.stop = true;
+		}
+	}
+
+	/**
+	 * Runs the turns for a block of agents. The fields written in a turn are only read by 
+	 * other threads after the barrier, which guarantees their visibility.
+	 */
+	private final class TurnWorker implements Runnable {
+		final int firstAgent;
+		final int endAgent;
+		CyclicBarrier barrier;
+
+		final int[] arrivals;   // agents that arrived in the turn
+		int numArrivals;
+		RuntimeException failure;
+		boolean stop;
+
+		TurnWorker(int firstAgent, int endAgent) {
+			this.firstAgent = firstAgent;
+			this.endAgent = endAgent;
+			this.arrivals = new int[endAgent - firstAgent];
+		}
+
+		public void run() {
+			for (int turn = 0; turn < totalTurns && !stop; turn++) {
+				try {
+					for (int a = firstAgent; a < endAgent; a++) {
+						if (agentEdge[a] == -1) {
+							decide(a, turn);
+						}
+					}
+				} catch (RuntimeException e) {
+					failure = e;
+				}
+
+				numArrivals = 0;
+				for (int a = firstAgent; a < endAgent; a++) {
+					if (agentEdge[a] != -1 && arrivalTurn[a] == turn + 1) {
+						agentEdge[a] = -1;
+						arrivals[numArrivals++] = a;
+					}
+				}
+
+				try {
+					barrier.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					failure = new IllegalStateException("Simulation interrupted", e);
+					return;
+				} catch (BrokenBarrierException e) {
+					if (failure == null) {
+						failure = new IllegalStateException("Simulation interrupted in other thread", e);
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	private void simulateEvents() {
+		BinHeapPQueue<AgentEvent> queue = new BinHeapPQueue<AgentEvent>(Math.max(1, numAgents));
+		AgentEvent[] events = new AgentEvent[numAgents];
+
+		// the initial visits are treated as arrivals in time 0
+		for (int a = 0; a < numAgents; a++) {
+			events[a] = new AgentEvent(a);
+			events[a].set(0, AgentEvent.ARRIVAL);
+			queue.add(events[a]);
+		}
+
+		while (!queue.isEmpty()) {
+			AgentEvent event = queue.removeMinimum();
+			int a = event.agent;
+			currentTurn = event.time;
+
+			if (event.type == AgentEvent.ARRIVAL) {
+				agentEdge[a] = -1;
+				visit(event.time, agentNode[a], a);
+				schedule(queue, event, event.time, AgentEvent.DECISION);
+
+			} else if (decide(a, event.time)) {
+				schedule(queue, event, arrivalTurn[a], AgentEvent.ARRIVAL);
+
+			} else {
+				schedule(queue, event, event.time + 1, AgentEvent.DECISION);
+			}
+		}
+
+		currentTurn = totalTurns;
+	}
+
+	// reuses the event object, if the event happens in the simulated interval
+	private void schedule(BinHeapPQueue<AgentEvent> queue, AgentEvent event, int time, int type) {
+		// decisions are taken in turns 0..totalTurns-1, and arrivals happen until time totalTurns
+		if (time < totalTurns || (time == totalTurns && type == AgentEvent.ARRIVAL)) {
+			event.set(time, type);
+			queue.add(event);
+		}
+	}
+
+	// asks the agent (in a node) for its next action and starts it;
+	// returns false if the agent stays in the node
+	private boolean decide(int a, int turn) {
+		selfPerceptions[a].update(turn, agentNode[a], previousNode[a]);
+		actions.stay(a);
+		agents[a].decide(selfPerceptions[a], graphPerception, actions);
+		return startAction(a, turn);
+	}
+
+	// starts the action of the agent (in a node) written in the buffer, if it doesn't stay
+	private boolean startAction(int a, int turn) {
+		if (!actions.isStay(a)) {
+			int pos = findEdge(agentNode[a], actions.getType(a), actions.getTarget(a));
+			if (pos == -1) {
+				throw new IllegalArgumentException("Invalid action of agent " + a + " in node " + agentNode[a] + ": " 
+						+ actions.getType(a) + "(" + actions.getTarget(a) + ")");
+			}
+			previousNode[a] = agentNode[a];
+			agentNode[a] = outTargets[pos];
+			agentEdge[a] = outEdgeIds[pos];
+			departureTurn[a] = turn;
+			arrivalTurn[a] = turn + outLengths[pos];
+			return true;
+		}
+		return false;
+	}
 
-class AgentInfo {
-	String name;
-	int id;
-	
-	int nodeId;
-	int edgeId;
-	int walkedDistance;
-	
-	List<String> messagesToSimulator;
-}
\ No newline at end of file
+	// position of the edge leaving the node given by the action, or -1
+	private int findEdge(int node, ActionType type, int target) {
+		switch (type) {
+		case GO_TO:
+			for (int pos = outOffsets[node]; pos < outOffsets[node + 1]; pos++) {
+				if (outTargets[pos] == target) {
+					return pos;
+				}
+			}
+			return -1;
+		case GO_THROUGH:
+			for (int pos = outOffsets[node]; pos < outOffsets[node + 1]; pos++) {
+				if (outEdgeIds[pos] == target) {
+					return pos;
+				}
+			}
+			return -1;
+		default:
+			throw new UnsupportedOperationException("Action not supported by the simulator: " + type);
+		}
+	}
+
+	private void visit(int turn, int node, int agent) {
+		lastVisits[node] = turn;
+		listener.onVisit(turn, node, agent);
+	}
+
+	/**
+	 * The exception that ended the simulation run as a thread, or null.
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * In the current time, the arrivals (i.e. the visits) come before the decisions, so the
+	 * agents always decide knowing all the visits of the time. Events of the same type in the
+	 * same time are ordered by agent, like in the turn-based mode.
+	 */
+	private static final class AgentEvent extends PQueueElement {
+		static final int ARRIVAL = 0;
+		static final int DECISION = 1;
+
+		final int agent;
+		int time;
+		int type;
+
+		AgentEvent(int agent) {
+			this.agent = agent;
+		}
+
+		void set(int time, int type) {
+			this.time = time;
+			this.type = type;
+		}
+
+		@Override
+		public int getKey() {
+			return time;
+		}
+
+		@Override
+		public boolean precedes(PQueueElement other) {
+			AgentEvent e = (AgentEvent) other;
+			if (time != e.time) {
+				return time < e.time;
+			} else if (type != e.type) {
+				return type < e.type;
+			}
+			return agent < e.agent;
+		}
+	}
+
+	public int getCurrentTurn() {
+		return currentTurn;
+	}
+
+	public int getTotalTurns() {
+		return totalTurns;
+	}
+
+	/**
+	 * The current node of the agent or, if it is in an edge, the target of the edge.
+	 */
+	public int getAgentNode(int agent) {
+		return agentNode[agent];
+	}
+
+	/**
+	 * The identifier of the edge where the agent is, or -1 if it is in a node.
+	 */
+	public int getAgentEdge(int agent) {
+		return agentEdge[agent];
+	}
+
+	/**
+	 * The length already walked by the agent in its current edge (0 if in a node).
+	 */
+	public int getWalkedDistance(int agent) {
+		return (agentEdge[agent] == -1) ? 0 : currentTurn - departureTurn[agent];
+	}
+
+}
@@ -1,36 +1,158 @@
 package yaps.local_simulator;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import yaps.agent_library.core.Agent;
 import yaps.agent_library.core.SimulatorConnector;
+import yaps.graph_library.Graph;
+import yaps.metrics.core.VisitListener;
 import yaps.metrics.core.VisitsList;
 
+
+/**
+ * Connects the agents to a LocalSimulator, which runs in another thread of the same
+ * process. The visits are recorded in a VisitsList and given to the visit listeners.
+ *
+ * @author Pablo A. Sampaio
+ */
 public class LocalSimulatorConnector extends SimulatorConnector {
+	private Graph graph;
+	private int totalTurns;
+	private boolean eventDriven;
+	private int numThreads = 1;
+
+	private List<Agent> agents;
+	private List<Integer> startNodes;
 
+	private VisitsList visits;
+	private LocalSimulator simulator;
+
+
+	public LocalSimulatorConnector(Graph graph, int turns) {
+		this.graph = graph;
+		this.totalTurns = turns;
+		setupSimulation();
+	}
+
+	/**
+	 * Removes the agents and the visits of a previous simulation.
+	 */
 	@Override
 	public void setupSimulation() {
-		// TODO Auto-generated method stub
+		if (visits != null) {
+			removeVisitListener(visits);
+		}
+		this.agents = new ArrayList<Agent>();
+		this.startNodes = new ArrayList<Integer>();
+		this.visits = new VisitsList();
+		this.simulator = null;
+		addVisitListener(visits);
 	}
 
+	/**
+	 * Adds the agent in node 0.
+	 */
 	@Override
 	public void addAgent(Agent a) {
-		// TODO Auto-generated method stub
+		addAgent(a, 0);
+	}
+
+	/**
+	 * Adds the agent in the given start node. Its identifier in the simulation is the
+	 * number of agents added before it.
+	 */
+	public void addAgent(Agent a, int startNode) {
+		if (simulator != null) {
+			throw new IllegalStateException("Simulation already started");
+		}
+		agents.add(a);
+		startNodes.add(startNode);
+	}
+
+	/**
+	 * Sets the mode of the simulator (see LocalSimulator.setEventDriven()). The event-driven
+	 * mode is not supported if the connector uses an agent runtime (see createAgentRuntime()).
+	 */
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+	}
+
+	/**
+	 * Sets the number of threads of the simulator (see LocalSimulator.setNumThreads()). Only
+	 * one thread is supported if the connector uses an agent runtime (see createAgentRuntime()).
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
 	}
 
 	@Override
 	public void startSimulation() {
-		// TODO Auto-generated method stub
+		if (simulator != null) {
+			throw new IllegalStateException("Simulation already started");
+		}
+
+		int[] nodes = new int[startNodes.size()];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = startNodes.get(i);
+		}
+
+		simulator = createSimulator(graph, totalTurns, agents.toArray(new Agent[agents.size()]), nodes,
+				new VisitListener() {
+					public void onVisit(long time, int node, int agent) {
+						fireVisit(time, node, agent);
+					}
+				});
+		simulator.start();
+	}
+
+	private LocalSimulator createSimulator(Graph graph, int turns, Agent[] agents, int[] startNodes, VisitListener listener) {
+		// validates the agents before creating the runtime
+		LocalSimulator simulator = new LocalSimulator(graph, turns, agents, startNodes, listener);
+		simulator.setEventDriven(eventDriven);
+		simulator.setNumThreads(numThreads);
+
+		AgentRuntime runtime = createAgentRuntime(graph);
+		if (runtime != null && (eventDriven || numThreads != 1)) {
+			runtime.stop();
+			throw new IllegalStateException("An agent runtime requires the turn-based mode with a single thread");
+		}
+		simulator.setAgentRuntime(runtime);
+		return simulator;
+	}
+
+	/**
+	 * Creates the runtime that will run the decisions of the agents in the simulation
+	 * (see LocalSimulator.setAgentRuntime()), or returns null to call the agents directly.
+	 * Subclasses may override it. With a runtime, the simulation is turn-based and runs in
+	 * a single thread.
+	 */
+	protected AgentRuntime createAgentRuntime(Graph graph) {
+		return null;
 	}
 
 	@Override
 	public void waitEndOfSimulation() {
-		// TODO Auto-generated method stub
+		if (simulator == null) {
+			return;
+		}
+		try {
+			simulator.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (simulator.getFailure() != null) {
+			throw new IllegalStateException("The simulation ended with an error", simulator.getFailure());
+		}
 	}
 
+	/**
+	 * The visits of the simulation (complete only after its end).
+	 */
 	@Override
 	public VisitsList getVisitsList() {
-		// TODO Auto-generated method stub
-		return null;
+		return visits;
 	}
-	
 
 }
@@ -0,0 +1,21 @@
+package yaps.local_simulator;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+
+
+/**
+ * Represents, in the simulator, an agent that runs in another process (the decisions
+ * are taken by an AgentRuntime).
+ *
+ * @author Pablo A. Sampaio
+ */
+class RemoteAgent extends Agent {
+
+	@Override
+	public Action decide(SelfPerception self, GraphPerception graph) {
+		throw new UnsupportedOperationException("Remote agents decide in their processes");
+	}
+
+}
@@ -0,0 +1,42 @@
+package yaps.local_simulator;
+
+import yaps.agent_library.core.Agent;
+import yaps.graph_library.Graph;
+
+
+/**
+ * Base class of the connectors whose agents run in other processes. The agents are
+ * only declared in the simulator, with addRemoteAgent(), and their decisions are taken
+ * by the agent runtime of the subclass (see createAgentRuntime()).
+ *
+ * @author Pablo A. Sampaio
+ */
+public abstract class RemoteAgentsConnector extends LocalSimulatorConnector {
+
+	public RemoteAgentsConnector(Graph graph, int turns) {
+		super(graph, turns);
+	}
+
+	/**
+	 * Declares an agent that will run in another process, in the given start node. Its
+	 * identifier is the number of agents added before it.
+	 */
+	public void addRemoteAgent(int startNode) {
+		super.addAgent(new RemoteAgent(), startNode);
+	}
+
+	/**
+	 * Not supported: the agents run in other processes (see addRemoteAgent()).
+	 */
+	@Override
+	public void addAgent(Agent a, int startNode) {
+		if (!(a instanceof RemoteAgent)) {
+			throw new UnsupportedOperationException("The agents must run in other processes, see addRemoteAgent()");
+		}
+		super.addAgent(a, startNode);
+	}
+
+	@Override
+	protected abstract AgentRuntime createAgentRuntime(Graph graph);
+
+}
@@ -0,0 +1,145 @@
+package yaps.local_simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+import yaps.graph_library.Graph;
+
+
+/**
+ * Runs the decisions of agents that are in other processes of the same machine (see
+ * SharedMemoryAgentHost), exchanging the perceptions and the actions through a
+ * memory-mapped file (see SharedMemoryLayout). The objects of the agents given by the
+ * simulator are not used.
+ * <br><br>
+ * The simulator waits for the responses spinning (and yielding the processor), which
+ * gives turns of a few microseconds when the agents are fast. If some agent doesn't
+ * respond in the timeout, the simulation fails.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SharedMemoryAgentRuntime implements AgentRuntime {
+	private static final int BUSY_SPINS = 100;
+
+	private final File file;
+	private final Graph graph;
+	private long timeoutNanos;
+
+	private MappedByteBuffer buffer;
+	private int numAgents;
+	private int numNodes;
+	private SelfPerception[] selfPerceptions;
+	private GraphPerception graphPerception;
+	private long[] sequences;
+
+
+	/**
+	 * The file is created (or replaced) when the simulation starts.
+	 */
+	public SharedMemoryAgentRuntime(File file, Graph graph) {
+		this.file = file;
+		this.graph = graph;
+		this.timeoutNanos = 10000 * 1000000L;
+	}
+
+	/**
+	 * Maximum time to wait for the response of an agent, in milliseconds. Default: 10000.
+	 */
+	public void setTimeout(long millis) {
+		this.timeoutNanos = millis * 1000000L;
+	}
+
+	@Override
+	public void start(Agent[] agents, SelfPerception[] selfPerceptions, GraphPerception graphPerception) {
+		this.numAgents = agents.length;
+		this.numNodes = graph.getNumNodes();
+		this.selfPerceptions = selfPerceptions;
+		this.graphPerception = graphPerception;
+		this.sequences = new long[numAgents];
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(0);
+			raf.setLength(SharedMemoryLayout.fileSize(numAgents, numNodes));
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SharedMemoryLayout.fileSize(numAgents, numNodes));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not create the shared file " + file, e);
+		}
+		buffer.order(ByteOrder.nativeOrder());
+
+		buffer.putInt(SharedMemoryLayout.MAGIC_OFFSET, SharedMemoryLayout.MAGIC);
+		buffer.putInt(SharedMemoryLayout.VERSION_OFFSET, SharedMemoryLayout.VERSION);
+		buffer.putInt(SharedMemoryLayout.NUM_AGENTS_OFFSET, numAgents);
+		buffer.putInt(SharedMemoryLayout.NUM_NODES_OFFSET, numNodes);
+		buffer.putLong(SharedMemoryLayout.GRAPH_HASH_OFFSET, graph.contentHash());
+		SharedMemoryLayout.putSequence(buffer, SharedMemoryLayout.STATUS_OFFSET, SharedMemoryLayout.STATUS_RUNNING);
+	}
+
+	@Override
+	public void decideAll(int[] agentIds, int count, ActionBuffer actions) {
+		for (int v = 0; v < numNodes; v++) {
+			buffer.putLong(SharedMemoryLayout.LAST_VISITS_OFFSET + 8 * v, graphPerception.getLastVisitTime(v));
+		}
+
+		// first, the content of all the requests; then, their sequence numbers
+		for (int i = 0; i < count; i++) {
+			int a = agentIds[i];
+			int slot = SharedMemoryLayout.slotOffset(numNodes, a);
+			buffer.putLong(slot + SharedMemoryLayout.REQUEST_TIME, selfPerceptions[a].getTime());
+			buffer.putInt(slot + SharedMemoryLayout.REQUEST_NODE, selfPerceptions[a].getNode());
+			buffer.putInt(slot + SharedMemoryLayout.REQUEST_PREVIOUS_NODE, selfPerceptions[a].getPreviousNode());
+		}
+		for (int i = 0; i < count; i++) {
+			int a = agentIds[i];
+			sequences[a] ++;
+			SharedMemoryLayout.putSequence(buffer, SharedMemoryLayout.slotOffset(numNodes, a) + SharedMemoryLayout.REQUEST_SEQUENCE, sequences[a]);
+		}
+
+		for (int i = 0; i < count; i++) {
+			int a = agentIds[i];
+			int slot = SharedMemoryLayout.slotOffset(numNodes, a);
+			waitResponse(a, slot);
+
+			int type = buffer.getInt(slot + SharedMemoryLayout.RESPONSE_TYPE);
+			if (type == SharedMemoryLayout.TYPE_FAILURE) {
+				throw new IllegalStateException("Agent " + a + " failed in its process");
+			}
+			actions.set(a, ActionBuffer.decodeType(type), buffer.getInt(slot + SharedMemoryLayout.RESPONSE_TARGET));
+		}
+	}
+
+	private void waitResponse(int agent, int slot) {
+		long start = 0;
+		for (int spins = 0; SharedMemoryLayout.getSequence(buffer, slot + SharedMemoryLayout.RESPONSE_SEQUENCE) != sequences[agent]; spins++) {
+			if (spins >= BUSY_SPINS) {
+				long failed = SharedMemoryLayout.getSequence(buffer, SharedMemoryLayout.FAILED_AGENT_OFFSET);
+				if (failed != 0) {
+					throw new IllegalStateException("Agent " + (failed - 1) + " failed in its process");
+				}
+				Thread.yield();
+				if (start == 0) {
+					start = System.nanoTime();
+				} else if ((spins & 1023) == 0 && System.nanoTime() - start > timeoutNanos) {
+					throw new IllegalStateException("Agent " + agent + " didn't respond in turn " + selfPerceptions[agent].getTime());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tells the agent processes that the simulation ended.
+	 */
+	@Override
+	public void stop() {
+		if (buffer != null) {
+			SharedMemoryLayout.putSequence(buffer, SharedMemoryLayout.STATUS_OFFSET, SharedMemoryLayout.STATUS_STOPPED);
+		}
+	}
+
+}
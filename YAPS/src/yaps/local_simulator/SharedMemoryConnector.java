@@ -0,0 +1,43 @@
+package yaps.local_simulator;
+
+import java.io.File;
+
+import yaps.graph_library.Graph;
+
+
+/**
+ * Runs the simulation in this process, with agents that run in other processes of the
+ * same machine (see SharedMemoryAgentHost). The perceptions and the actions of each turn
+ * are exchanged through a memory-mapped file, with the binary layout described in
+ * SharedMemoryLayout.
+ * <br><br>
+ * The agents are only declared here, with addRemoteAgent(), and the agent processes
+ * may be started before or after the simulation.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SharedMemoryConnector extends RemoteAgentsConnector {
+	private File file;
+	private long timeoutMillis;
+
+	public SharedMemoryConnector(Graph graph, int turns, File file) {
+		super(graph, turns);
+		this.file = file;
+		this.timeoutMillis = 10000;
+	}
+
+	/**
+	 * Maximum time to wait for the response of an agent (see SharedMemoryAgentRuntime.setTimeout()).
+	 */
+	public void setTimeout(long millis) {
+		this.timeoutMillis = millis;
+	}
+
+	@Override
+	protected AgentRuntime createAgentRuntime(Graph graph) {
+		SharedMemoryAgentRuntime runtime = new SharedMemoryAgentRuntime(file, graph);
+		runtime.setTimeout(timeoutMillis);
+		return runtime;
+	}
+
+}
@@ -0,0 +1,157 @@
+package yaps.local_simulator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Layout of the memory-mapped file used to exchange perceptions and actions between the
+ * simulator (SharedMemoryAgentRuntime) and agents in other processes of the same machine
+ * (SharedMemoryAgentHost). All the values use the native byte order.
+ * <ul>
+ * <li> Header (64 bytes): magic number, version, number of agents, number of nodes,
+ *      content hash of the graph, status (a long, written last when the file is ready)
+ *      and the identifier+1 of an agent that failed (a long, written by the agent process).
+ * <li> Times of the last visits of the nodes (one long for each node), written by the
+ *      simulator before each turn.
+ * <li> One slot of 128 bytes for each agent, aligned with 64 bytes. The first half (the
+ *      request) is written by the simulator: sequence number, time, current node and
+ *      previous node. The second half (the response) is written by the agent: sequence
+ *      number, type of the action and target.
+ * </ul>
+ * Each agent has at most one request waiting for response, so the slot works as a
+ * mailbox. The writer of a request (or response) writes the sequence number last, after
+ * the other values; the reader waits until the sequence number changes, then reads the
+ * rest (see putSequence() and getSequence()).
+ *
+ * @author Pablo A. Sampaio
+ */
+public final class SharedMemoryLayout {
+	public static final int MAGIC = 0x5941534D;  // "YASM"
+	public static final int VERSION = 1;
+
+	public static final int STATUS_RUNNING = 1;
+	public static final int STATUS_STOPPED = 2;
+
+	// header
+	public static final int MAGIC_OFFSET = 0;
+	public static final int VERSION_OFFSET = 4;
+	public static final int NUM_AGENTS_OFFSET = 8;
+	public static final int NUM_NODES_OFFSET = 12;
+	public static final int GRAPH_HASH_OFFSET = 16;
+	public static final int STATUS_OFFSET = 24;
+	public static final int FAILED_AGENT_OFFSET = 32;
+	public static final int HEADER_SIZE = 64;
+
+	public static final int LAST_VISITS_OFFSET = HEADER_SIZE;
+
+	// in a slot
+	public static final int SLOT_SIZE = 128;
+	public static final int REQUEST_SEQUENCE = 0;
+	public static final int REQUEST_TIME = 8;
+	public static final int REQUEST_NODE = 16;
+	public static final int REQUEST_PREVIOUS_NODE = 20;
+	public static final int RESPONSE_SEQUENCE = 64;
+	public static final int RESPONSE_TYPE = 72;
+	public static final int RESPONSE_TARGET = 76;
+
+	// type of the response of an agent that failed (the others are given by ActionBuffer.encodeType())
+	public static final int TYPE_FAILURE = -1;
+
+	// storeFence() and loadFence() of sun.misc.Unsafe (Java 8+), or null if not available
+	private static final MethodHandle STORE_FENCE;
+	private static final MethodHandle LOAD_FENCE;
+
+	// used only when the fences are not available
+	private static volatile int volatileField;
+
+	static {
+		MethodHandle storeFence = null;
+		MethodHandle loadFence = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			storeFence = lookup.unreflect(unsafeClass.getMethod("storeFence")).bindTo(unsafe);
+			loadFence = lookup.unreflect(unsafeClass.getMethod("loadFence")).bindTo(unsafe);
+			storeFence.invokeExact();
+			loadFence.invokeExact();
+		} catch (Throwable e) {
+			storeFence = null;
+			loadFence = null;
+		}
+		STORE_FENCE = storeFence;
+		LOAD_FENCE = loadFence;
+	}
+
+	private SharedMemoryLayout() {
+	}
+
+	public static int slotsOffset(int numNodes) {
+		int end = LAST_VISITS_OFFSET + 8 * numNodes;
+		return (end + 63) / 64 * 64;
+	}
+
+	public static int slotOffset(int numNodes, int agent) {
+		return slotsOffset(numNodes) + agent * SLOT_SIZE;
+	}
+
+	public static int fileSize(int numAgents, int numNodes) {
+		return slotsOffset(numNodes) + numAgents * SLOT_SIZE;
+	}
+
+	/**
+	 * Writes the long value after a store fence, so the previous writes are visible to
+	 * other processes before it.
+	 * <br><br>
+	 * The fences are the ones of sun.misc.Unsafe (the sources are kept compatible with
+	 * Java 7, which has no VarHandle). If they are not available, volatile accesses are
+	 * used instead, which only keep the order of the writes in processors that don't
+	 * reorder stores with stores and loads with loads (as x86).
+	 */
+	public static void putSequence(ByteBuffer buffer, int offset, long sequence) {
+		storeFence();
+		buffer.putLong(offset, sequence);
+		storeFence();
+	}
+
+	/**
+	 * Reads the long value, which is not reused from a previous read, with a load fence
+	 * after it, so the next reads are not done before it (see putSequence()).
+	 */
+	public static long getSequence(ByteBuffer buffer, int offset) {
+		loadFence();
+		long sequence = buffer.getLong(offset);
+		loadFence();
+		return sequence;
+	}
+
+	private static void storeFence() {
+		if (STORE_FENCE == null) {
+			volatileField = 0;
+			return;
+		}
+		try {
+			STORE_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void loadFence() {
+		if (LOAD_FENCE == null) {
+			int value = volatileField;
+			return;
+		}
+		try {
+			LOAD_FENCE.invokeExact();
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,454 @@
+package yaps.local_simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+import yaps.graph_library.Graph;
+
+
+/**
+ * Runs the decisions of agents connected by TCP (see SocketAgentClient), with the
+ * binary protocol described in SocketProtocol. Each connection may carry many agents.
+ * <br><br>
+ * All the connections are handled with non-blocking I/O by a single selector, in the
+ * thread of the simulation (no threads are created for the connections). In start(),
+ * the runtime waits until all the agents of the simulation are announced by some
+ * connection. Then, it stops accepting connections and, in each turn, it sends one
+ * frame to each connection and waits for one frame from each one.
+ * <br><br>
+ * A connection that doesn't start with a valid HELLO (e.g. of a process that is not an
+ * agent) is just closed, but errors in the connections of the agents end the simulation.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SocketAgentRuntime implements AgentRuntime {
+	private static final int BACKLOG = 1024;   // connections waiting to be accepted
+
+	private final Graph graph;
+	private final ServerSocketChannel server;
+	private Selector selector;
+	private long timeoutNanos;
+
+	private int numAgents;
+	private int numNodes;
+	private SelfPerception[] selfPerceptions;
+	private GraphPerception graphPerception;
+
+	private List<Connection> acceptedConnections;
+	private List<Connection> connections;   // the ones that sent the HELLO
+	private Connection[] agentConnections;  // connection of each agent
+	private int numAnnouncedAgents;
+
+	// of the current turn
+	private long[] sentLastVisits;
+	private int[] changedNodes;
+	private boolean[] requested;
+	private ActionBuffer actions;
+	private int pendingResponses;
+
+
+	/**
+	 * Opens the server socket, which accepts connections before the simulation starts.
+	 * Use port 0 to choose any free port (see getPort()).
+	 */
+	public SocketAgentRuntime(Graph graph, InetSocketAddress address) throws IOException {
+		this.graph = graph;
+		this.server = ServerSocketChannel.open();
+		this.server.bind(address, BACKLOG);
+		this.timeoutNanos = 10000 * 1000000L;
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Maximum time to wait for the connection of the agents and, in each turn, for their
+	 * responses, in milliseconds. Default: 10000.
+	 */
+	public void setTimeout(long millis) {
+		this.timeoutNanos = millis * 1000000L;
+	}
+
+	@Override
+	public void start(Agent[] agents, SelfPerception[] selfPerceptions, GraphPerception graphPerception) {
+		this.numAgents = agents.length;
+		this.numNodes = graph.getNumNodes();
+		this.selfPerceptions = selfPerceptions;
+		this.graphPerception = graphPerception;
+
+		this.acceptedConnections = new ArrayList<Connection>();
+		this.connections = new ArrayList<Connection>();
+		this.agentConnections = new Connection[numAgents];
+		this.sentLastVisits = new long[numNodes];
+		this.changedNodes = new int[numNodes];
+		this.requested = new boolean[numAgents];
+
+		try {
+			selector = Selector.open();
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+
+			long deadline = System.nanoTime() + timeoutNanos;
+			while (numAnnouncedAgents < numAgents) {
+				poll(deadline, "the connection of the agents");
+			}
+
+			// no more connections are accepted in the simulation
+			server.close();
+			for (Connection connection : acceptedConnections) {
+				if (connection.agentIds == null) {
+					connection.close();
+				}
+			}
+
+			for (Connection connection : connections) {
+				ByteBuffer out = connection.beginFrame(SocketProtocol.START, 16);
+				out.putInt(numAgents);
+				out.putInt(numNodes);
+				out.putLong(graph.contentHash());
+				connection.endFrame();
+				connection.flush();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error in the connections of the agents", e);
+		}
+	}
+
+	@Override
+	public void decideAll(int[] agentIds, int count, ActionBuffer actions) {
+		if (count == 0) {
+			return;
+		}
+		this.actions = actions;
+
+		int numChanged = 0;
+		for (int v = 0; v < numNodes; v++) {
+			long lastVisit = graphPerception.getLastVisitTime(v);
+			if (lastVisit != sentLastVisits[v]) {
+				sentLastVisits[v] = lastVisit;
+				changedNodes[numChanged++] = v;
+			}
+		}
+
+		for (Connection connection : connections) {
+			connection.numRequests = 0;
+		}
+		for (int i = 0; i < count; i++) {
+			agentConnections[agentIds[i]].numRequests ++;
+			requested[agentIds[i]] = true;
+		}
+
+		// the beginning of the frames, then the requests (in order of the agents), then the end
+		long time = selfPerceptions[agentIds[0]].getTime();
+		for (Connection connection : connections) {
+			ByteBuffer out = connection.beginFrame(SocketProtocol.TURN, 16 + 12 * numChanged + 12 * connection.numRequests);
+			out.putLong(time);
+			out.putInt(numChanged);
+			for (int i = 0; i < numChanged; i++) {
+				out.putInt(changedNodes[i]);
+				out.putLong(sentLastVisits[changedNodes[i]]);
+			}
+			out.putInt(connection.numRequests);
+			connection.awaitingResponse = true;
+		}
+		for (int i = 0; i < count; i++) {
+			int a = agentIds[i];
+			ByteBuffer out = agentConnections[a].out;
+			out.putInt(a);
+			out.putInt(selfPerceptions[a].getNode());
+			out.putInt(selfPerceptions[a].getPreviousNode());
+		}
+
+		try {
+			for (Connection connection : connections) {
+				connection.endFrame();
+				connection.flush();
+			}
+
+			pendingResponses = connections.size();
+			long deadline = System.nanoTime() + timeoutNanos;
+			while (pendingResponses > 0) {
+				poll(deadline, "the actions of turn " + time);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error in the connections of the agents", e);
+		}
+	}
+
+	// handles the channels that are ready, waiting until the deadline
+	private void poll(long deadline, String waited) throws IOException {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) {
+			throw new IllegalStateException("Timeout waiting " + waited);
+		}
+		selector.select(Math.max(1, remaining / 1000000L));
+
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				continue;
+			}
+
+			Connection connection = (Connection) key.attachment();
+			if (key.isWritable()) {
+				connection.flush();
+			}
+			if (key.isReadable()) {
+				connection.read();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Connection connection = new Connection(channel);
+			acceptedConnections.add(connection);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		}
+	}
+
+	// the first frame of a connection, between the position and the limit of the buffer;
+	// returns false if it is not a valid HELLO, with new agents of the simulation
+	private boolean handleHello(Connection connection, ByteBuffer frame) {
+		if (numAnnouncedAgents == numAgents || frame.get() != SocketProtocol.HELLO || frame.remaining() < 4) {
+			return false;
+		}
+		int count = frame.getInt();
+		if (count < 1 || frame.remaining() != 4 * count) {
+			return false;
+		}
+
+		int[] agentIds = new int[count];
+		for (int i = 0; i < count; i++) {
+			int a = frame.getInt();
+			if (a < 0 || a >= numAgents || agentConnections[a] != null) {
+				for (int j = 0; j < i; j++) {
+					agentConnections[agentIds[j]] = null;
+				}
+				return false;
+			}
+			agentIds[i] = a;
+			agentConnections[a] = connection;
+		}
+		connection.agentIds = agentIds;
+		connections.add(connection);
+		numAnnouncedAgents += count;
+		return true;
+	}
+
+	// a frame of a connection of agents, between the position and the limit of the buffer
+	private void handleFrame(Connection connection, ByteBuffer frame) {
+		byte type = frame.get();
+
+		if (type == SocketProtocol.ACTIONS && connection.awaitingResponse) {
+			int count = frame.getInt();
+			if (count != connection.numRequests) {
+				throw new IllegalStateException("Expected " + connection.numRequests + " actions, received " + count);
+			}
+			// each requested agent must appear once (so, all of them appear)
+			for (int i = 0; i < count; i++) {
+				int a = frame.getInt();
+				int code = frame.getInt();
+				int target = frame.getInt();
+				if (a < 0 || a >= numAgents || agentConnections[a] != connection || !requested[a]) {
+					throw new IllegalStateException("Unexpected action of agent " + a);
+				}
+				requested[a] = false;
+				actions.set(a, ActionBuffer.decodeType(code), target);
+			}
+			connection.awaitingResponse = false;
+			pendingResponses --;
+
+		} else if (type == SocketProtocol.FAILURE) {
+			throw new IllegalStateException("Agent " + frame.getInt() + " failed in its process");
+
+		} else {
+			throw new IllegalStateException("Unexpected frame of type " + type);
+		}
+	}
+
+	/**
+	 * Sends the end of the simulation to the agents and closes all the connections
+	 * accepted (also the ones that didn't send the HELLO).
+	 */
+	@Override
+	public void stop() {
+		if (connections != null) {
+			try {
+				for (Connection connection : connections) {
+					connection.beginFrame(SocketProtocol.END, 0);
+					connection.endFrame();
+					connection.flush();
+				}
+				// waits (a little) to send the frames not sent yet
+				long deadline = System.nanoTime() + 1000 * 1000000L;
+				while (System.nanoTime() < deadline && hasPendingOutput()) {
+					selector.select(10);
+					for (Connection connection : connections) {
+						connection.flush();
+					}
+				}
+			} catch (IOException e) {
+				// the simulation already ended
+			}
+		}
+		if (acceptedConnections != null) {
+			for (Connection connection : acceptedConnections) {
+				close(connection.channel);
+			}
+		}
+		if (selector != null) {
+			close(selector);
+		}
+		close(server);
+	}
+
+	private static void close(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// the simulation already ended
+		}
+	}
+
+	private boolean hasPendingOutput() {
+		for (Connection connection : connections) {
+			if (connection.out.position() > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A connection with buffers for the frames read and written.
+	 */
+	private class Connection {
+		final SocketChannel channel;
+		SelectionKey key;
+		int[] agentIds;      // null until the HELLO
+
+		ByteBuffer in;       // in write mode (data from 0 to the position)
+		ByteBuffer out;      // in write mode (data from 0 to the position)
+		int frameStart;
+		int numRequests;
+		boolean awaitingResponse;  // from the TURN sent until the ACTIONS received
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.in = ByteBuffer.allocate(4096);
+			this.out = ByteBuffer.allocate(4096);
+		}
+
+		ByteBuffer beginFrame(byte type, int contentLength) {
+			ensureOutput(5 + contentLength);
+			frameStart = out.position();
+			out.putInt(0);  // the length is written in endFrame()
+			out.put(type);
+			return out;
+		}
+
+		void endFrame() {
+			out.putInt(frameStart, out.position() - frameStart - 4);
+		}
+
+		private void ensureOutput(int length) {
+			if (out.remaining() < length) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * out.capacity(), out.position() + length));
+				out.flip();
+				larger.put(out);
+				out = larger;
+			}
+		}
+
+		void flush() throws IOException {
+			out.flip();
+			channel.write(out);
+			out.compact();
+			int ops = (out.position() > 0) ? (SelectionKey.OP_READ | SelectionKey.OP_WRITE) : SelectionKey.OP_READ;
+			if (key.interestOps() != ops) {
+				key.interestOps(ops);
+			}
+		}
+
+		void close() throws IOException {
+			key.cancel();
+			channel.close();
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) == -1) {
+				close();
+				if (agentIds != null) {
+					throw new IllegalStateException("Connection closed by the process of agent " + agentIds[0]);
+				}
+				return;
+			}
+
+			in.flip();
+			while (in.remaining() >= 4) {
+				int length = in.getInt(in.position());
+				// before the HELLO, the frame must fit the HELLO with all the agents
+				int maxLength = (agentIds == null) ? 5 + 4 * numAgents : SocketProtocol.MAX_FRAME_LENGTH;
+				if (length < 1 || length > maxLength) {
+					if (agentIds == null) {
+						close();
+						return;
+					}
+					throw new IllegalStateException("Invalid length of frame: " + length);
+				}
+				if (in.remaining() < 4 + length) {
+					break;
+				}
+				int end = in.position() + 4 + length;
+				int limit = in.limit();
+				in.position(in.position() + 4);
+				in.limit(end);
+				if (agentIds != null) {
+					handleFrame(this, in);
+				} else if (!handleHello(this, in)) {
+					close();
+					return;
+				}
+				in.limit(limit);
+				in.position(end);
+			}
+			in.compact();
+
+			// the next frame must fit in the buffer
+			if (in.position() >= 4) {
+				int needed = 4 + in.getInt(0);
+				if (needed > in.capacity()) {
+					ByteBuffer larger = ByteBuffer.allocate(needed);
+					in.flip();
+					larger.put(in);
+					in = larger;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package yaps.local_simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import yaps.graph_library.Graph;
+
+
+/**
+ * Runs the simulation in this process, with agents that connect by TCP, possibly from
+ * other machines (see SocketAgentClient and SocketProtocol). The server socket is
+ * opened in the constructor, so the agents may connect before the simulation starts.
+ * The simulation waits all the agents declared with addRemoteAgent() to connect.
+ * <br><br>
+ * A connector runs only one simulation. If the simulation is not started, call close()
+ * to close the server socket.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class SocketConnector extends RemoteAgentsConnector implements Closeable {
+	private SocketAgentRuntime runtime;
+	private boolean used;
+
+	/**
+	 * Listens in the given address (use port 0 to choose any free port, see getPort()).
+	 */
+	public SocketConnector(Graph graph, int turns, InetSocketAddress address) throws IOException {
+		super(graph, turns);
+		this.runtime = new SocketAgentRuntime(graph, address);
+	}
+
+	public int getPort() {
+		return runtime.getPort();
+	}
+
+	/**
+	 * See SocketAgentRuntime.setTimeout().
+	 */
+	public void setTimeout(long millis) {
+		runtime.setTimeout(millis);
+	}
+
+	@Override
+	protected AgentRuntime createAgentRuntime(Graph graph) {
+		if (used) {
+			throw new IllegalStateException("The socket connector runs only one simulation");
+		}
+		used = true;
+		return runtime;
+	}
+
+	/**
+	 * Closes the server socket and the connections of the agents, if the simulation was
+	 * not started (otherwise, they are closed at the end of the simulation). After it,
+	 * the connector can't run a simulation.
+	 */
+	@Override
+	public void close() {
+		if (!used) {
+			used = true;
+			runtime.stop();
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package yaps.local_simulator;
+
+
+/**
+ * Binary protocol between the simulator (SocketAgentRuntime) and the agents connected
+ * by TCP (SocketAgentClient). Each message is a frame: its length in bytes (an int),
+ * then the type of the frame (a byte) and the content. The values are in big-endian
+ * order.
+ * <ul>
+ * <li> HELLO (client): the number of agents of the connection and their identifiers (ints).
+ * <li> START (server): number of agents, number of nodes (ints) and content hash of the graph (long).
+ * <li> TURN (server): the time (long); the number of nodes whose time of last visit changed
+ *      since the previous TURN and, for each one, the node (int) and the time (long); the
+ *      number of agents of the connection that must decide and, for each one, the agent, its
+ *      current node and its previous node (ints).
+ * <li> ACTIONS (client): response to a TURN, with the number of actions and, for each
+ *      one, the agent, the code of the type (see ActionBuffer.encodeType()) and the target (ints).
+ * <li> FAILURE (client): the identifier of an agent (int) whose decision failed.
+ * <li> END (server): end of the simulation.
+ * </ul>
+ * In each turn where some agent is in a node, all the connections receive a TURN (maybe
+ * without agents to decide), so that the perceptions and the actions of a turn are sent
+ * in a single frame for each connection.
+ *
+ * @author Pablo A. Sampaio
+ */
+public final class SocketProtocol {
+	public static final byte HELLO = 1;
+	public static final byte START = 2;
+	public static final byte TURN = 3;
+	public static final byte ACTIONS = 4;
+	public static final byte FAILURE = 5;
+	public static final byte END = 6;
+
+	/**
+	 * Maximum length of a frame, to detect corrupted streams.
+	 */
+	public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	private SocketProtocol() {
+	}
+
+}
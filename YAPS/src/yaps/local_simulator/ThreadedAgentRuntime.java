@@ -0,0 +1,207 @@
+package yaps.local_simulator;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import yaps.agent_library.core.Agent;
+import yaps.agent_library.core.GraphPerception;
+import yaps.agent_library.core.SelfPerception;
+
+
+/**
+ * Runs each agent in its own thread, which blocks until the simulator gives it a new
+ * perception, then calls Agent.decide() and gives back the action. The decisions of the
+ * same turn run concurrently, so agents with blocking code (e.g. waiting for I/O, or for
+ * a remote process) don't delay each other.
+ * <br><br>
+ * The threads are virtual threads when the Java platform supports them (Java 21 or later),
+ * which allows tens of thousands of agents. Otherwise, they are daemon platform threads.
+ * The virtual threads are created by reflection, so this class also compiles and runs in
+ * older platforms.
+ * <br><br>
+ * The agents decide concurrently, so they must not share mutable objects.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class ThreadedAgentRuntime implements AgentRuntime {
+	private static final Method OF_VIRTUAL;         // Thread.ofVirtual()
+	private static final Method BUILDER_NAME;       // Thread.Builder.name(String)
+	private static final Method BUILDER_UNSTARTED;  // Thread.Builder.unstarted(Runnable)
+
+	static {
+		Method ofVirtual = null, name = null, unstarted = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class);
+			unstarted = builder.getMethod("unstarted", Runnable.class);
+
+			// creates one thread (not started), because the methods may exist but fail
+			// (e.g. in Java 19 and 20, without the preview features enabled)
+			Object test = name.invoke(ofVirtual.invoke(null), "test");
+			if (!(unstarted.invoke(test, new Runnable() { public void run() { } }) instanceof Thread)) {
+				ofVirtual = null;
+			}
+		} catch (Exception | LinkageError e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_UNSTARTED = unstarted;
+	}
+
+	private final boolean virtualThreads;
+
+	private Agent[] agents;
+	private SelfPerception[] selfPerceptions;
+	private GraphPerception graphPerception;
+
+	private Thread[] threads;
+	private Semaphore[] requests;      // released by the simulator to ask for a decision
+	private RuntimeException[] failures;
+
+	// of the current turn (only written before releasing the requests)
+	private ActionBuffer actions;
+	private CountDownLatch pending;
+	private volatile boolean stopped;
+
+
+	/**
+	 * Uses virtual threads, if they are supported.
+	 */
+	public ThreadedAgentRuntime() {
+		this(true);
+	}
+
+	/**
+	 * If the parameter is false, or if the platform doesn't support virtual threads,
+	 * uses platform threads.
+	 */
+	public ThreadedAgentRuntime(boolean useVirtualThreads) {
+		this.virtualThreads = useVirtualThreads && isVirtualThreadsSupported();
+	}
+
+	public static boolean isVirtualThreadsSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	public boolean usesVirtualThreads() {
+		return virtualThreads;
+	}
+
+	@Override
+	public void start(Agent[] agents, SelfPerception[] selfPerceptions, GraphPerception graphPerception) {
+		this.agents = agents;
+		this.selfPerceptions = selfPerceptions;
+		this.graphPerception = graphPerception;
+		this.stopped = false;
+
+		int numAgents = agents.length;
+		this.threads = new Thread[numAgents];
+		this.requests = new Semaphore[numAgents];
+		this.failures = new RuntimeException[numAgents];
+
+		for (int a = 0; a < numAgents; a++) {
+			requests[a] = new Semaphore(0);
+			threads[a] = newThread(new AgentLoop(a), "agent-" + a);
+		}
+		for (int a = 0; a < numAgents; a++) {
+			threads[a].start();
+		}
+	}
+
+	private Thread newThread(Runnable runnable, String name) {
+		if (virtualThreads) {
+			try {
+				Object builder = OF_VIRTUAL.invoke(null);
+				builder = BUILDER_NAME.invoke(builder, name);
+				return (Thread) BUILDER_UNSTARTED.invoke(builder, runnable);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				throw new IllegalStateException("Could not create a virtual thread", e);
+			}
+		}
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	@Override
+	public void decideAll(int[] agentIds, int count, ActionBuffer actions) {
+		this.actions = actions;
+		this.pending = new CountDownLatch(count);
+
+		for (int i = 0; i < count; i++) {
+			requests[agentIds[i]].release();
+		}
+
+		try {
+			pending.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting the decisions of the agents", e);
+		}
+
+		for (int i = 0; i < count; i++) {
+			RuntimeException failure = failures[agentIds[i]];
+			if (failure != null) {
+				failures[agentIds[i]] = null;
+				throw failure;
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+		if (threads == null) {
+			return;
+		}
+		// start() may have failed before creating (or starting) all the threads
+		for (int a = 0; a < threads.length; a++) {
+			if (requests[a] != null) {
+				requests[a].release();
+			}
+		}
+		try {
+			for (Thread thread : threads) {
+				if (thread != null) {
+					thread.join();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The code of the thread of an agent.
+	 */
+	private class AgentLoop implements Runnable {
+		private final int agent;
+
+		AgentLoop(int agent) {
+			this.agent = agent;
+		}
+
+		public void run() {
+			while (true) {
+				requests[agent].acquireUninterruptibly();
+				if (stopped) {
+					return;
+				}
+				try {
+					agents[agent].decide(selfPerceptions[agent], graphPerception, actions);
+				} catch (RuntimeException e) {
+					failures[agent] = e;
+				} catch (Error e) {
+					failures[agent] = new IllegalStateException("Error in agent " + agent, e);
+				} finally {
+					pending.countDown();
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package yaps.local_simulator;
+
+import yaps.graph_library.Graph;
+
+
+/**
+ * A local connector that runs each agent in its own thread (virtual, if supported by
+ * the platform), using a ThreadedAgentRuntime. The visits are the same of the
+ * LocalSimulatorConnector, but the agents of the same turn decide concurrently, so
+ * blocking code in the agents doesn't stop the other agents.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class ThreadedSimulatorConnector extends LocalSimulatorConnector {
+	private boolean useVirtualThreads;
+	private ThreadedAgentRuntime runtime;
+
+	/**
+	 * Uses virtual threads, if they are supported.
+	 */
+	public ThreadedSimulatorConnector(Graph graph, int turns) {
+		this(graph, turns, true);
+	}
+
+	public ThreadedSimulatorConnector(Graph graph, int turns, boolean useVirtualThreads) {
+		super(graph, turns);
+		this.useVirtualThreads = useVirtualThreads;
+	}
+
+	@Override
+	protected AgentRuntime createAgentRuntime(Graph graph) {
+		runtime = new ThreadedAgentRuntime(useVirtualThreads);
+		return runtime;
+	}
+
+	/**
+	 * True if the agents of the last simulation started run in virtual threads.
+	 */
+	public boolean usesVirtualThreads() {
+		return runtime != null && runtime.usesVirtualThreads();
+	}
+
+}
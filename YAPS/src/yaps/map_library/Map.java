@@ -1,6 +1,7 @@
 package yaps.map_library;
 
 import yaps.graph_library.Graph;
+import yaps.graph_library.GraphDataRepr;
 
 
 /**
@@ -28,19 +29,21 @@ public class Map {
 		this.name = mapName;
 	}
 	
-	protected void setGraph(NodeInfo[] nodes, EdgeInfo[] edges) {
+	protected void setGraph(NodeInfo[] nodes, EdgeInfo[] edges, GraphDataRepr representation) {
 		this.nodes = nodes;
 		this.edges = edges;
-		setupTopology();
+		setupTopology(representation);
 	}
 	
-	private void setupTopology() {
+	private void setupTopology(GraphDataRepr representation) {
 		Graph g = new Graph(this.nodes.length);
+		g.setEdgeIndexing(true);
 		
 		for (EdgeInfo e : this.edges) {
 			g.addEdge(e.nodeA, e.nodeB, e.getLength(), e.directed);
 		}
 		
+		g.changeRepresentation(representation);
 		this.topology = g;
 	}
 
@@ -55,6 +58,10 @@ public class Map {
 		return this.name;
 	}
 
+	public Graph getGraph() {
+		return this.topology;
+	}
+
 	public boolean edgesHaveLength() {
 		return this.hasLengths;
 	}
@@ -71,4 +78,17 @@ public class Map {
 		return this.hasNodeImportances;
 	}
 
+	/**
+	 * Returns the importances of the nodes (in a new array), to be used as weights 
+	 * of the nodes in the metrics. If the nodes don't have importances, all the 
+	 * nodes have weight 1.0.
+	 */
+	public double[] getNodeImportances() {
+		double[] importances = new double[this.nodes.length];
+		for (int i = 0; i < this.nodes.length; i++) {
+			importances[i] = this.hasNodeImportances ? this.nodes[i].getImportance() : 1.0d;
+		}
+		return importances;
+	}
+
 }
@@ -9,6 +9,7 @@ import java.util.List;
 
 import yaps.files.YapsLexer;
 import yaps.files.YapsParsingException;
+import yaps.graph_library.GraphDataRepr;
 
 
 /**
@@ -31,9 +32,20 @@ public class MapParser {
 	private boolean hasLengths;
 	private boolean isDirected; //obs.: a mixed graph is considered directed
 
+	private GraphDataRepr graphRepresentation;
+
 	YapsLexer lexer;
 
 	public MapParser() {		
+		this(GraphDataRepr.LISTS);
+	}
+	
+	/**
+	 * Creates a parser that builds the graph of the map in the given representation
+	 * (e.g. CSR, for large maps).
+	 */
+	public MapParser(GraphDataRepr representation) {
+		this.graphRepresentation = representation;
 	}
 	
 	public Map loadFromFile(String fileName) throws YapsParsingException {
@@ -52,7 +64,7 @@ public class MapParser {
 		
 		Map map = new Map(this.mapName);
 		
-		map.setGraph(this.nodes, this.edges);
+		map.setGraph(this.nodes, this.edges, this.graphRepresentation);
 		map.setProperties(this.hasLengths, this.isDirected, this.has2Dcoordinates, this.hasNodeImportances);
 		
 		return map;
@@ -6,6 +6,9 @@ import yaps.util.DoubleList;
 /**
  * Calculate metrics based on the (absolute or relative) frequencies 
  * of visits of the nodes.
+ * <br><br>
+ * It also calculates weighted metrics, with weights of the nodes (e.g. their 
+ * importances, see Map.getNodeImportances()).
  * 
  * @author Pablo A. Sampaio
  */
@@ -15,25 +18,54 @@ public class FrequencyMetricsReport {
 	
 	private DoubleList nodesFequencies;
 	private DoubleList nodesVisits;
+	
+	private double[] weights;  // of the nodes
 
 	public FrequencyMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list) {
+		this(nodes, initialTime, finalTime, list, null);
+	}
+	
+	/**
+	 * Also calculates the weighted metrics with the given weights of the nodes (or 1.0 for 
+	 * all nodes, if null).
+	 */
+	public FrequencyMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list, double[] nodeWeights) {
+		this.weights = NodeWeights.check(nodeWeights, nodes);
 		init(nodes, initialTime, finalTime, list);
 	}
 	
+	// receives the visits already filtered by time and the number of visits of each node (see MetricsSuite)
+	FrequencyMetricsReport(int initialTime, int finalTime, VisitsList filteredList, int[] visitsPerNode, double[] nodeWeights) {
+		this.weights = nodeWeights;
+		this.startTime = initialTime;
+		this.endTime = finalTime;
+		this.visits = filteredList;
+		setVisits(visitsPerNode);
+	}
+	
 	private void init(int numNodes, int initialTime, int finalTime, VisitsList list) {
 		this.startTime = initialTime;
 		this.endTime = finalTime;
 		
 		this.visits = list.filterByTime(startTime, endTime);
-		int period = finalTime - initialTime + 1;
+		
+		int[] visitsPerNode = new int[numNodes];
+		for (int n = 0; n < numNodes; n++) {
+			visitsPerNode[n] = visits.filterByVertex(n).getNumVisits();
+		}
+		setVisits(visitsPerNode);
+	}
+
+	private void setVisits(int[] visitsPerNode) {
+		int numNodes = visitsPerNode.length;
+		int period = endTime - startTime + 1;
 		
 		this.nodesVisits = new DoubleList(numNodes);
 		this.nodesFequencies = new DoubleList(numNodes);
 		
 		for (int n = 0; n < numNodes; n++) {
-			int nodeVisits = visits.filterByVertex(n).getNumVisits();
-			this.nodesVisits.set(n, nodeVisits);
-			this.nodesFequencies.set(n, (double)nodeVisits / (double)period);
+			this.nodesVisits.set(n, visitsPerNode[n]);
+			this.nodesFequencies.set(n, (double)visitsPerNode[n] / (double)period);
 		}
 	}
 	
@@ -86,6 +118,50 @@ public class FrequencyMetricsReport {
 		return this.nodesFequencies.standardDeviation(); 
 	}
 	
+	/**
+	 * Weighted average of the numbers of visits of the nodes, with the weights of the nodes.
+	 */
+	public double getWeightedAverageVisits() {
+		return weightedMean(this.nodesVisits);
+	}
+	
+	/**
+	 * Weighted average of the frequencies of the nodes, with the weights of the nodes.
+	 */
+	public double getWeightedAverageFrequency() {
+		return weightedMean(this.nodesFequencies);
+	}
+	
+	/**
+	 * Weighted standard deviation of the frequencies of the nodes (from the weighted 
+	 * average), with the weights of the nodes.
+	 */
+	public double getWeightedStdDevOfFrequencies() {
+		double mean = weightedMean(this.nodesFequencies);
+		double sumWeights = 0.0d, sumSquaredWeights = 0.0d, deviations = 0.0d;
+		double deviation;
+		
+		for (int n = 0; n < weights.length; n++) {
+			deviation = this.nodesFequencies.get(n) - mean;
+			sumWeights += weights[n];
+			sumSquaredWeights += weights[n] * weights[n];
+			deviations += weights[n] * deviation * deviation;
+		}
+		
+		return Math.sqrt(NodeWeights.variance(sumWeights, sumSquaredWeights, deviations));
+	}
+	
+	private double weightedMean(DoubleList values) {
+		double sum = 0.0d, sumWeights = 0.0d;
+		
+		for (int n = 0; n < weights.length; n++) {
+			sum += weights[n] * values.get(n);
+			sumWeights += weights[n];
+		}
+		
+		return sum / sumWeights;
+	}
+	
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
 		builder.append(this.nodesVisits);
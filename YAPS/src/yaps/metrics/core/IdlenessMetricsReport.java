@@ -1,11 +1,21 @@
 package yaps.metrics.core;
 
-import yaps.util.DoubleList;
+import java.util.Arrays;
 
 
 
 /**
  * Calculate metrics based on the instantaneous idleness of all nodes (in all turns).
+ * <br><br>
+ * The instantaneous idleness of a node in time t is t - L + 1, where L is the time of 
+ * the last visit to the node (until t), or the initial time, if the node was not visited 
+ * yet. So, between two consecutive visits (or the limits of the period) with a gap of 
+ * length G, the idlenesses are 1, 2, ..., G. The metrics are calculated from the gaps, 
+ * without keeping the idlenesses of each turn: it takes O(visits + nodes) time and 
+ * O(nodes) memory.
+ * <br><br>
+ * It also calculates weighted metrics, with weights of the nodes (e.g. their importances, 
+ * see Map.getNodeImportances()), from the same sums per node.
  * 
  * @author Pablo A. Sampaio
  */
@@ -15,12 +25,42 @@ public class IdlenessMetricsReport {
 
 	private VisitsList visits;
 	
-	private DoubleList[] instIdlenessesByNode; // instantaneous idleness per node
+	private long[] sumIdlenessesByNode; // sum of the instantaneous idlenesses per node
+	private long[] maxIdlenessByNode;
+	private long maxIdleness;
+	
+	private double[] weights;           // of the nodes
 	
 	public IdlenessMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list) {
+		this(nodes, initialTime, finalTime, list, null);
+	}
+	
+	/**
+	 * Also calculates the weighted metrics with the given weights of the nodes (or 1.0 for 
+	 * all nodes, if null).
+	 */
+	public IdlenessMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list, double[] nodeWeights) {
+		weights = NodeWeights.check(nodeWeights, nodes);
 		init(nodes, initialTime, finalTime, list);
 	}
 	
+	// receives the visits already filtered by time, the sum and the maximum of the 
+	// idlenesses of each node (see MetricsSuite)
+	IdlenessMetricsReport(int nodes, int initialTime, int finalTime, VisitsList filteredList, long[] sumIdlenesses, long[] maxIdlenesses, double[] nodeWeights) {
+		numNodes = nodes;
+		startTime = initialTime;
+		endTime = finalTime;
+		visits = filteredList;
+		sumIdlenessesByNode = sumIdlenesses;
+		maxIdlenessByNode = maxIdlenesses;
+		weights = nodeWeights;
+		
+		maxIdleness = -1;
+		for (int v = 0; v < nodes; v++) {
+			maxIdleness = Math.max(maxIdleness, maxIdlenesses[v]);
+		}
+	}
+	
 	private void init(int nodes, int initialTime, int finalTime, VisitsList list) {
 		numNodes = nodes;
 		startTime = initialTime;
@@ -28,35 +68,36 @@ public class IdlenessMetricsReport {
 		
 		visits = list.filterByTime(startTime, endTime);
 
-		instIdlenessesByNode = new DoubleList[nodes];
-		for (int i = 0; i < nodes; i++) {
-			instIdlenessesByNode[i] = new DoubleList(endTime-startTime+1);
-		}
+		sumIdlenessesByNode = new long[nodes];
+		maxIdlenessByNode = new long[nodes];
+		maxIdleness = -1;
 		
-		int[] currIdlenesses = new int[numNodes];
-		int currVisitIndex = 0;
-		Visit currVisit = visits.getVisit(currVisitIndex);
+		long[] lastVisit = new long[nodes];
+		Arrays.fill(lastVisit, startTime);
 		
-		for (int timeT = startTime; timeT<= endTime; timeT++){
-			// increment the idlenesses of all nodes 
-			for (int nodeX = 0; nodeX < numNodes; nodeX++) {
-				currIdlenesses[nodeX]++;
-			}
-			// identify nodes currently visited
-			while (currVisit.time == timeT){
-				currIdlenesses[currVisit.node] = 1;
-				currVisitIndex++;
-				if (currVisitIndex < visits.getNumVisits()) {
-					currVisit = visits.getVisit(currVisitIndex);
-				} else {
-					break;
-				}
-			}
-			// set the calculated instantaneous idlenesses
-			for (int nodeX = 0; nodeX < numNodes; nodeX++) {
-				instIdlenessesByNode[nodeX].set(timeT-startTime, currIdlenesses[nodeX]);
-			}
+		int node;
+		long time;
+		
+		for (int i = 0; i < visits.getNumVisits(); i++) {
+			node = visits.getNode(i);
+			time = visits.getTime(i);
+			addGap(node, time - lastVisit[node]);
+			lastVisit[node] = time;
+		}
+		
+		for (int nodeX = 0; nodeX < numNodes; nodeX++) {
+			addGap(nodeX, endTime + 1 - lastVisit[nodeX]);
+		}
+	}
 
+	// adds the idlenesses 1, 2, ..., gap
+	private void addGap(int node, long gap) {
+		sumIdlenessesByNode[node] += gap * (gap + 1) / 2;
+		if (gap > maxIdlenessByNode[node]) {
+			maxIdlenessByNode[node] = gap;
+		}
+		if (gap > maxIdleness) {
+			maxIdleness = gap;
 		}
 	}
 	
@@ -64,16 +105,7 @@ public class IdlenessMetricsReport {
 	 * Maximum instantaneous idleness (in all nodes in all turns/timestamps).
 	 */
 	public double getMaxIdleness() {
-		double maxMaxIdl = -1.0d;
-	
-		for (int nodeX = 0; nodeX < this.numNodes; nodeX++) {
-			double nodeMax = this.instIdlenessesByNode[nodeX].max();
-			if (nodeMax > maxMaxIdl) {
-				maxMaxIdl = nodeMax;
-			}
-		}
-		
-		return maxMaxIdl;
+		return maxIdleness;
 	}
 	
 	/**
@@ -83,19 +115,73 @@ public class IdlenessMetricsReport {
 	 */
 	public double getAverageIdleness() {
 		double sumNodeAvg = 0.0d;
+		int numTurns = endTime - startTime + 1;
 		
 		for (int nodeX = 0; nodeX < this.numNodes; nodeX++) {
-			sumNodeAvg += this.instIdlenessesByNode[nodeX].average();
+			sumNodeAvg += (double)this.sumIdlenessesByNode[nodeX] / numTurns;
 		}
 		
 		return sumNodeAvg / this.numNodes;
 	}
+	
+	/**
+	 * Weighted average of the average idlenesses of the nodes (along the simulation), 
+	 * with the weights of the nodes.
+	 */
+	public double getWeightedAverageIdleness() {
+		double sumNodeAvg = 0.0d;
+		double sumWeights = 0.0d;
+		int numTurns = endTime - startTime + 1;
+		
+		for (int nodeX = 0; nodeX < this.numNodes; nodeX++) {
+			sumNodeAvg += weights[nodeX] * this.sumIdlenessesByNode[nodeX] / numTurns;
+			sumWeights += weights[nodeX];
+		}
+		
+		return sumNodeAvg / sumWeights;
+	}
+	
+	/**
+	 * Maximum instantaneous idleness multiplied by the weight of its node.
+	 */
+	public double getWeightedMaxIdleness() {
+		double max = -1.0d;
+		
+		for (int nodeX = 0; nodeX < this.numNodes; nodeX++) {
+			max = Math.max(max, weights[nodeX] * this.maxIdlenessByNode[nodeX]);
+		}
+		
+		return max;
+	}
 
+	/**
+	 * Lists the instantaneous idlenesses of each node in each turn (one line per node).
+	 * It is calculated again in each call.
+	 */
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
+		VisitsList nodeVisits;
+		int nextVisit;
+		long idleness;
+		
 		for (int nodeX = 0; nodeX < this.numNodes; nodeX++) {
-			builder.append(this.instIdlenessesByNode[nodeX].toString());
-			builder.append('\n');
+			nodeVisits = visits.filterByVertex(nodeX);
+			nextVisit = 0;
+			idleness = 0;
+			
+			builder.append('[');
+			for (int timeT = startTime; timeT <= endTime; timeT++) {
+				idleness ++;
+				while (nextVisit < nodeVisits.getNumVisits() && nodeVisits.getTime(nextVisit) == timeT) {
+					idleness = 1;
+					nextVisit ++;
+				}
+				if (timeT > startTime) {
+					builder.append(", ");
+				}
+				builder.append((double)idleness);
+			}
+			builder.append("]\n");
 		}
 		return builder.toString();
 	}
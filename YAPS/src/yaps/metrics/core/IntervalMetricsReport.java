@@ -6,6 +6,10 @@ import yaps.util.DoubleList;
 
 /**
  * Class that calculates metrics based on the intervals between consecutive visits.
+ * <br><br>
+ * It also calculates weighted metrics, where the intervals of each node have the weight
+ * of the node (e.g. its importance, see Map.getNodeImportances()). They are calculated 
+ * from the same intervals and, without weights, are equal to the unweighted metrics.
  * 
  * @author Pablo A. Sampaio
  */
@@ -17,11 +21,37 @@ public class IntervalMetricsReport {
 	
 	private DoubleList[] intervalsByNode; // each list has the intervals of a node
 	private DoubleList   allIntervals;
+	
+	private double[] weights;     // of the nodes
+	private double sumWeights;    // sum of the weights of all intervals
+	private double sumSquaredWeights;
+	private double weightedSum, weightedSquaredSum, weightedDeviations;
+	private double weightedMax;
 
 	public IntervalMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list) {
+		this(nodes, initialTime, finalTime, list, null);
+	}
+	
+	/**
+	 * Also calculates the weighted metrics with the given weights of the nodes (or 1.0 for 
+	 * all nodes, if null).
+	 */
+	public IntervalMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list, double[] nodeWeights) {
+		weights = NodeWeights.check(nodeWeights, nodes);
 		init(nodes, initialTime, finalTime, list);
 	}
 	
+	// receives the visits already filtered by time and the intervals of each node (see MetricsSuite)
+	IntervalMetricsReport(int nodes, int initialTime, int finalTime, VisitsList filteredList, DoubleList[] intervals, double[] nodeWeights) {
+		weights = nodeWeights;
+		numNodes = nodes;
+		startTime = initialTime;
+		endTime = finalTime;
+		visits = filteredList;
+		intervalsByNode = intervals;
+		joinIntervals();
+	}
+	
 	private void init(int nodes, int initialTime, int finalTime, VisitsList list) {
 		numNodes = nodes;
 		startTime = initialTime;
@@ -31,36 +61,74 @@ public class IntervalMetricsReport {
 		
 		intervalsByNode = new DoubleList[nodes];
 		
-		int sumSize = 0;
-		
 		for (int v = 0; v < numNodes; v++) {
-			intervalsByNode[v] = calculateIntervals(v);
-			sumSize += intervalsByNode[v].size();
+			intervalsByNode[v] = calculateIntervals(visits.filterByVertex(v), startTime, endTime);
 		}
 
-		allIntervals = new DoubleList(sumSize);
+		joinIntervals();
+	}
+
+	private void joinIntervals() {
+		allIntervals = new DoubleList();
 		
+		DoubleList nodeIntervals;
+		double w, squares;
+		
+		sumWeights = 0.0d;
+		sumSquaredWeights = 0.0d;
+		weightedSum = 0.0d;
+		weightedSquaredSum = 0.0d;
+		weightedMax = Double.NEGATIVE_INFINITY;
+		
+		for (int v = 0; v < numNodes; v++) {
+			nodeIntervals = intervalsByNode[v];
+			allIntervals.addAll(nodeIntervals);
+			
+			squares = 0.0d;
+			for (int i = 0; i < nodeIntervals.size(); i++) {
+				squares += nodeIntervals.get(i) * nodeIntervals.get(i);
+			}
+			
+			w = weights[v];
+			sumWeights += w * nodeIntervals.size();
+			sumSquaredWeights += w * w * nodeIntervals.size();
+			weightedSum += w * nodeIntervals.sum();
+			weightedSquaredSum += w * squares;
+			weightedMax = Math.max(weightedMax, w * nodeIntervals.max());
+		}
+		
+		// squared deviations from the weighted mean, from the deviations of each node
+		double weightedMean = weightedSum / sumWeights;
+		double deviation;
+		
+		weightedDeviations = 0.0d;
 		for (int v = 0; v < numNodes; v++) {
-			allIntervals.addAll(intervalsByNode[v]);
+			nodeIntervals = intervalsByNode[v];
+			deviation = nodeIntervals.mean() - weightedMean;
+			weightedDeviations += weights[v] * (nodeDeviations(nodeIntervals) + nodeIntervals.size() * deviation * deviation);
 		}
 	}
 	
-	private DoubleList calculateIntervals(int node) {
+	// sum of the squared deviations from the mean of the node
+	private static double nodeDeviations(DoubleList nodeIntervals) {
+		return (nodeIntervals.size() > 1) ? nodeIntervals.variance() * (nodeIntervals.size() - 1) : 0.0d;
+	}
+	
+	// the intervals between the visits of a node (the visits to the node in the period)
+	static DoubleList calculateIntervals(VisitsList nodeVisits, int startTime, int endTime) {
 		DoubleList intervals = new DoubleList();
 		
-		VisitsList nodeVisits = visits.filterByVertex(node);
-		
 		long lastVisitTime = startTime;
 		double interval;
 		
-		Visit v;
+		long time;
 		
 		for (int i = 0; i < nodeVisits.getNumVisits(); i ++) {
-			v = nodeVisits.getVisit(i);
+			time = nodeVisits.getTime(i);
 			
-			interval = (v.time - lastVisitTime);
+			interval = (time - lastVisitTime);
 			intervals.add(interval);			
-			lastVisitTime = v.time;
+			lastVisitTime = time;
 		}
 		
 		interval = (endTime + 1 - lastVisitTime);
@@ -103,15 +171,63 @@ public class IntervalMetricsReport {
 	
 	/**
 	 * Generalized mean of the intervals between consecutive visits,
-	 * considering all intervals from all nodes.
-	 * The priorities of the nodes are used as weights for each interval.
+	 * considering all intervals from all nodes (without weights; see 
+	 * getWeightedGeneralizedMeanOfIntervals()).
 	 */
 	public double getGeneralizedMeanOfIntervals(double p) {
 		return allIntervals.generalizedMean(p);
 	}
+	
+	/**
+	 * Weighted average of the intervals between consecutive visits, considering 
+	 * all intervals from all nodes, with the weights of their nodes.
+	 */
+	public double getWeightedAverageInterval() {
+		return weightedSum / sumWeights;
+	}
+	
+	/**
+	 * Maximum interval multiplied by the weight of its node.
+	 */
+	public double getWeightedMaximumInterval() {
+		return weightedMax;
+	}
+	
+	/**
+	 * Weighted standard deviation of the intervals (from the weighted average), 
+	 * with the weights of their nodes.
+	 */
+	public double getWeightedStdDevOfIntervals() {
+		return Math.sqrt(NodeWeights.variance(sumWeights, sumSquaredWeights, weightedDeviations));
+	}
+	
+	/**
+	 * Weighted quadratic mean of the intervals, with the weights of their nodes.
+	 */
+	public double getWeightedQuadraticMeanOfIntervals() {
+		return Math.sqrt(weightedSquaredSum / sumWeights);
+	}
+	
+	/**
+	 * Weighted generalized mean of the intervals, with the weights of their nodes.
+	 */
+	public double getWeightedGeneralizedMeanOfIntervals(double p) {
+		double sum = 0.0d;
+		DoubleList nodeIntervals;
+		
+		for (int v = 0; v < numNodes; v++) {
+			nodeIntervals = intervalsByNode[v];
+			for (int i = 0; i < nodeIntervals.size(); i++) {
+				sum += weights[v] * Math.pow(nodeIntervals.get(i), p);
+			}
+		}
+		
+		return Math.pow(sum / sumWeights, 1.0d / p);
+	}
 
 	/**
-	 * Returns the absolute frequencies of each (size of) interval. 
+	 * Returns the absolute frequencies of each (size of) interval.
+	 * For percentiles with bounded memory, see QuantileMetricsReport.
 	 */
 	public int[] getIntervalsHistogram() {
 		int[] histogram = new int[(int)this.allIntervals.max() + 1];
@@ -0,0 +1,41 @@
+package yaps.metrics.core;
+
+
+/**
+ * The idleness and interval metrics calculated for a period of time (closed interval 
+ * from 'startTime' to 'endTime'). The values are the same given by IdlenessMetricsReport
+ * and by IntervalMetricsReport for the period. See WindowMetricsReport.
+ * 
+ * @author Pablo A. Sampaio
+ */
+public class MetricsSnapshot {
+	public final long startTime;
+	public final long endTime;
+
+	public final double averageIdleness;
+	public final double maxIdleness;
+
+	public final double averageInterval;
+	public final double maximumInterval;
+	public final double stdDevOfIntervals;
+	public final double quadraticMeanOfIntervals;
+	
+	MetricsSnapshot(long startTime, long endTime, double avgIdleness, double maxIdleness, 
+			double avgInterval, double maxInterval, double stdDevIntervals, double quadMeanIntervals) {
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.averageIdleness = avgIdleness;
+		this.maxIdleness = maxIdleness;
+		this.averageInterval = avgInterval;
+		this.maximumInterval = maxInterval;
+		this.stdDevOfIntervals = stdDevIntervals;
+		this.quadraticMeanOfIntervals = quadMeanIntervals;
+	}
+	
+	public String toString() {
+		return String.format("[%d,%d] idleness avg/max: %.3f/%.0f, intervals avg/max/stddev/rms: %.3f/%.0f/%.3f/%.3f",
+				startTime, endTime, averageIdleness, maxIdleness, averageInterval, maximumInterval, 
+				stdDevOfIntervals, quadraticMeanOfIntervals);
+	}
+	
+}
@@ -0,0 +1,77 @@
+package yaps.metrics.core;
+
+import yaps.util.DoubleList;
+import yaps.util.ParallelLoop;
+
+
+/**
+ * Calculates the interval, idleness and frequency reports of the same period together. 
+ * The visits are filtered by time and grouped by node only once, then the data of each 
+ * node is calculated in parallel (see ParallelLoop). The results are the same of the 
+ * reports created separately (also the weighted metrics, if weights of the nodes are given).
+ * 
+ * @author Pablo A. Sampaio
+ */
+public class MetricsSuite {
+	private static final int NODES_GRAIN = 64;
+
+	private IntervalMetricsReport intervalReport;
+	private IdlenessMetricsReport idlenessReport;
+	private FrequencyMetricsReport frequencyReport;
+	
+	public MetricsSuite(int nodes, int initialTime, int finalTime, VisitsList list) {
+		this(nodes, initialTime, finalTime, list, null);
+	}
+	
+	/**
+	 * Also calculates the weighted metrics with the given weights of the nodes (or 1.0 for 
+	 * all nodes, if null), e.g. the importances given by Map.getNodeImportances().
+	 */
+	public MetricsSuite(final int nodes, final int initialTime, final int finalTime, VisitsList list, double[] nodeWeights) {
+		double[] weights = NodeWeights.check(nodeWeights, nodes);
+		final VisitsList visits = list.filterByTime(initialTime, finalTime);
+		visits.prepareVertexFilter();
+		
+		final DoubleList[] intervals = new DoubleList[nodes];
+		final long[] sumIdlenesses = new long[nodes];
+		final long[] maxIdlenesses = new long[nodes];
+		final int[] visitsPerNode = new int[nodes];
+		
+		new ParallelLoop() {
+			protected void run(int from, int to) {
+				VisitsList nodeVisits;
+				long interval;
+				
+				for (int node = from; node < to; node++) {
+					nodeVisits = visits.filterByVertex(node);
+					visitsPerNode[node] = nodeVisits.getNumVisits();
+					intervals[node] = IntervalMetricsReport.calculateIntervals(nodeVisits, initialTime, finalTime);
+					
+					// the idlenesses between two visits (with interval I) are 1, 2, ..., I
+					for (int i = 0; i < intervals[node].size(); i++) {
+						interval = (long)intervals[node].get(i);
+						sumIdlenesses[node] += interval * (interval + 1) / 2;
+					}
+					maxIdlenesses[node] = (long)intervals[node].max();
+				}
+			}
+		}.execute(0, nodes, NODES_GRAIN);
+		
+		intervalReport = new IntervalMetricsReport(nodes, initialTime, finalTime, visits, intervals, weights);
+		idlenessReport = new IdlenessMetricsReport(nodes, initialTime, finalTime, visits, sumIdlenesses, maxIdlenesses, weights);
+		frequencyReport = new FrequencyMetricsReport(initialTime, finalTime, visits, visitsPerNode, weights);
+	}
+
+	public IntervalMetricsReport getIntervalReport() {
+		return intervalReport;
+	}
+
+	public IdlenessMetricsReport getIdlenessReport() {
+		return idlenessReport;
+	}
+
+	public FrequencyMetricsReport getFrequencyReport() {
+		return frequencyReport;
+	}
+
+}
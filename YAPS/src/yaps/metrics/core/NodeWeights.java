@@ -0,0 +1,56 @@
+package yaps.metrics.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Validation of the weights of the nodes used in the weighted metrics of the reports
+ * (e.g. the importances given by Map.getNodeImportances()).
+ *
+ * @author Pablo A. Sampaio
+ */
+final class NodeWeights {
+
+	private NodeWeights() {
+	}
+
+	/**
+	 * Returns a copy of the weights, or weights 1.0 for all nodes if the array is null.
+	 * The weights must be non-negative, with a positive sum.
+	 */
+	static double[] check(double[] weights, int nodes) {
+		double[] result = new double[nodes];
+
+		if (weights == null) {
+			Arrays.fill(result, 1.0d);
+			return result;
+		}
+		if (weights.length != nodes) {
+			throw new IllegalArgumentException("Wrong number of weights: " + weights.length + " (nodes: " + nodes + ")");
+		}
+
+		double sum = 0.0d;
+		for (int v = 0; v < nodes; v++) {
+			if (!(weights[v] >= 0.0d) || Double.isInfinite(weights[v])) {
+				throw new IllegalArgumentException("Invalid weight of node " + v + ": " + weights[v]);
+			}
+			result[v] = weights[v];
+			sum += weights[v];
+		}
+		if (nodes > 0 && sum == 0.0d) {
+			throw new IllegalArgumentException("All weights are zero");
+		}
+
+		return result;
+	}
+
+	/**
+	 * Unbiased weighted variance, given the sum of the weights (V1), the sum of the squared
+	 * weights (V2) and the sum of the weighted squared deviations from the weighted mean. With
+	 * weights 1.0, it is the (sample) variance given by DoubleList.
+	 */
+	static double variance(double sumWeights, double sumSquaredWeights, double weightedDeviations) {
+		return weightedDeviations / (sumWeights - sumSquaredWeights / sumWeights);
+	}
+
+}
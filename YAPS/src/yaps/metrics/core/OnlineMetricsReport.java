@@ -0,0 +1,267 @@
+package yaps.metrics.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Calculates the metrics of a simulation incrementally, as the visits happen (it can
+ * be registered as a VisitListener in the simulator), without keeping the visits. 
+ * <br><br>
+ * The metrics can be queried at any time t (not before the last visit), in constant 
+ * time, and are the same given by the other reports for the period from the initial 
+ * time to t:
+ * <ul>
+ * <li> idleness metrics, as in IdlenessMetricsReport; 
+ * <li> interval metrics, as in IntervalMetricsReport (the last interval of each node 
+ *      goes from its last visit to t+1); 
+ * <li> frequency metrics, as in FrequencyMetricsReport.
+ * </ul>
+ * It keeps only the time of the last visit and the number of visits of each node, plus 
+ * some sums: the closed intervals (between consecutive visits) are accumulated when they 
+ * end, and the contributions of the open intervals (from the last visits to t) are given 
+ * by the sums of the last times of visits and of their squares. The nodes are kept in a 
+ * list ordered by the times of the last visits, to give the least recently visited node.
+ * <br><br>
+ * The times are relative to the initial time and the sums are kept in longs, so they
+ * may overflow in very long simulations (e.g. 10^4 nodes and more than 10^7 turns). 
+ * 
+ * @author Pablo A. Sampaio
+ */
+public class OnlineMetricsReport implements VisitListener {
+	private int numNodes;
+	private long startTime;
+	private long lastTime;    // time of the last visit (relative to startTime)
+
+	private long[] lastVisit; // of each node (relative to startTime)
+	private int[] visits;     // of each node
+
+	// nodes ordered by the last visit (the first is the least recently visited)
+	private int[] previous;
+	private int[] next;
+	private int first, last;
+
+	private long sumLastVisits;
+	private long sumSquaredLastVisits;
+
+	// closed intervals (i.e. between two visits, or from the initial time to the first visit)
+	private long closedCount;
+	private long closedSum;
+	private long closedSquaredSum;
+	private long closedMax;
+	private long closedSumIdlenesses;  // sum of 1+2+...+G, for each interval G
+
+	private long totalVisits;
+	private long sumSquaredVisits;
+
+
+	public OnlineMetricsReport(int nodes, long initialTime) {
+		this.numNodes = nodes;
+		this.startTime = initialTime;
+		this.lastTime = 0;
+
+		this.lastVisit = new long[nodes];
+		this.visits = new int[nodes];
+
+		this.previous = new int[nodes];
+		this.next = new int[nodes];
+		for (int v = 0; v < nodes; v++) {
+			previous[v] = v - 1;
+			next[v] = (v + 1 < nodes) ? v + 1 : -1;
+		}
+		this.first = (nodes > 0) ? 0 : -1;
+		this.last = nodes - 1;
+
+		this.closedMax = -1;
+	}
+
+	@Override
+	public void onVisit(long time, int node, int agent) {
+		time -= startTime;
+		if (time < lastTime) {
+			throw new IllegalArgumentException("Visits must be given in order of time: " 
+					+ (time + startTime) + " < " + (lastTime + startTime));
+		}
+		lastTime = time;
+
+		long gap = time - lastVisit[node];
+
+		closedCount ++;
+		closedSum += gap;
+		closedSquaredSum += gap * gap;
+		closedSumIdlenesses += gap * (gap + 1) / 2;
+		if (gap > closedMax) {
+			closedMax = gap;
+		}
+
+		sumLastVisits += time - lastVisit[node];
+		sumSquaredLastVisits += time * time - lastVisit[node] * lastVisit[node];
+		lastVisit[node] = time;
+
+		totalVisits ++;
+		sumSquaredVisits += 2L * visits[node] + 1;
+		visits[node] ++;
+
+		moveToEnd(node);
+	}
+
+	private void moveToEnd(int node) {
+		if (node == last) {
+			return;
+		}
+		// removes
+		if (previous[node] == -1) {
+			first = next[node];
+		} else {
+			next[previous[node]] = next[node];
+		}
+		previous[next[node]] = previous[node];
+		// inserts in the end
+		previous[node] = last;
+		next[node] = -1;
+		next[last] = node;
+		last = node;
+	}
+
+	private long relativeTime(long time) {
+		time -= startTime;
+		if (time < lastTime) {
+			throw new IllegalArgumentException("Time " + (time + startTime) + " is before the last visit");
+		}
+		return time;
+	}
+
+	// sum of the open intervals (from the last visit of each node to time+1)
+	private long openSum(long time) {
+		return numNodes * (time + 1) - sumLastVisits;
+	}
+
+	// sum of the squares of the open intervals
+	private long openSquaredSum(long time) {
+		return numNodes * (time + 1) * (time + 1) - 2 * (time + 1) * sumLastVisits + sumSquaredLastVisits;
+	}
+
+	/**
+	 * The time of the last visit received.
+	 */
+	public long getLastTime() {
+		return lastTime + startTime;
+	}
+
+	/**
+	 * Number of visits received.
+	 */
+	public long getTotalVisits() {
+		return totalVisits;
+	}
+
+	/**
+	 * Instantaneous idleness of the node at the given time.
+	 */
+	public long getInstantaneousIdleness(int node, long time) {
+		return relativeTime(time) + 1 - lastVisit[node];
+	}
+
+	/**
+	 * Average of the instantaneous idlenesses of all nodes at the given time.
+	 */
+	public double getAverageInstantaneousIdleness(long time) {
+		return (double)openSum(relativeTime(time)) / numNodes;
+	}
+
+	/**
+	 * Maximum instantaneous idleness among all nodes at the given time.
+	 */
+	public long getMaxInstantaneousIdleness(long time) {
+		return relativeTime(time) + 1 - lastVisit[first];
+	}
+
+	/**
+	 * Maximum instantaneous idleness (in all nodes in all turns until the given time).
+	 */
+	public double getMaxIdleness(long time) {
+		return Math.max(closedMax, getMaxInstantaneousIdleness(time));
+	}
+
+	/**
+	 * Average idleness from the initial time until the given time, averaged by the number 
+	 * of nodes (also called "global idleness"). 
+	 */
+	public double getAverageIdleness(long time) {
+		long t = relativeTime(time);
+		long openSumIdlenesses = (openSquaredSum(t) + openSum(t)) / 2;
+		return (double)(closedSumIdlenesses + openSumIdlenesses) / (t + 1) / numNodes;
+	}
+
+	/**
+	 * Maximum interval between consecutive visits, considering all intervals 
+	 * from all nodes until the given time.
+	 */
+	public double getMaximumInterval(long time) {
+		return getMaxIdleness(time);
+	}
+
+	/**
+	 * Average interval between consecutive visits, considering all intervals 
+	 * from all nodes until the given time.
+	 */
+	public double getAverageInterval(long time) {
+		long t = relativeTime(time);
+		return (double)(closedSum + openSum(t)) / (closedCount + numNodes);
+	}
+
+	/**
+	 * Standard deviation of the intervals between consecutive visits, considering 
+	 * all intervals from all nodes until the given time.
+	 */
+	public double getStdDevOfIntervals(long time) {
+		long t = relativeTime(time);
+		long count = closedCount + numNodes;
+		double sum = closedSum + openSum(t);
+		double squaredSum = closedSquaredSum + openSquaredSum(t);
+		return Math.sqrt(Math.max(0.0d, (squaredSum - sum * sum / count) / (count - 1)));
+	}
+
+	/**
+	 * Quadratic mean of the intervals between consecutive visits, considering 
+	 * all intervals from all nodes until the given time.
+	 */
+	public double getQuadraticMeanOfIntervals(long time) {
+		long t = relativeTime(time);
+		return Math.sqrt((double)(closedSquaredSum + openSquaredSum(t)) / (closedCount + numNodes));
+	}
+
+	/**
+	 * Average number of visits per node.
+	 */
+	public double getAverageVisits() {
+		return (double)totalVisits / numNodes;
+	}
+
+	/**
+	 * Standard deviation of the numbers of visits per node. 
+	 */
+	public double getStdDevOfVisits() {
+		double sum = totalVisits;
+		return Math.sqrt(Math.max(0.0d, (sumSquaredVisits - sum * sum / numNodes) / (numNodes - 1)));
+	}
+
+	/**
+	 * Average frequency of all nodes, from the initial time until the given time.
+	 */
+	public double getAverageFrequency(long time) {
+		return getAverageVisits() / (relativeTime(time) + 1);
+	}
+
+	/**
+	 * The standard deviation of the frequencies of all nodes, from the initial time 
+	 * until the given time.
+	 */
+	public double getStdDevOfFrequencies(long time) {
+		return getStdDevOfVisits() / (relativeTime(time) + 1);
+	}
+
+	public String toString() {
+		return "OnlineMetricsReport : lastTime=" + getLastTime() + " visits=" + Arrays.toString(visits);
+	}
+
+}
@@ -0,0 +1,169 @@
+package yaps.metrics.core;
+
+import yaps.util.QuantileSketch;
+
+
+/**
+ * Calculates the distributions of the intervals between visits and of the instantaneous
+ * idlenesses, per node and of all nodes, as quantile sketches (see QuantileSketch). So, it
+ * gives approximate percentiles (e.g. p50, p95, p99, p99.9) with bounded memory, without
+ * keeping the visits nor the intervals.
+ * <br><br>
+ * The intervals and the idlenesses are the same considered in IntervalMetricsReport and in
+ * IdlenessMetricsReport: for each interval of length G of a node, the idlenesses 1, 2, ..., G
+ * are counted (in time proportional to the number of buckets). The visits are received in
+ * order of time, as a VisitListener (followed by a call to finish()), or from a VisitsList.
+ * <br><br>
+ * The reports of different executions (or with the visits of different agents, in separate
+ * streams) can be joined with merge().
+ *
+ * @author Pablo A. Sampaio
+ */
+public class QuantileMetricsReport implements VisitListener {
+	private int numNodes;
+	private long startTime;
+	private long lastTime;    // relative to startTime
+
+	private long[] lastVisit; // of each node (relative to startTime)
+
+	private QuantileSketch[] intervalsByNode;
+	private QuantileSketch[] idlenessesByNode;
+	private QuantileSketch allIntervals;
+	private QuantileSketch allIdlenesses;
+
+
+	/**
+	 * Receives the visits as a VisitListener. Call finish() after the last visit.
+	 */
+	public QuantileMetricsReport(int nodes, long initialTime) {
+		this(nodes, initialTime, QuantileSketch.DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Same as above, with sketches of the given precision (see QuantileSketch).
+	 */
+	public QuantileMetricsReport(int nodes, long initialTime, int precision) {
+		this.numNodes = nodes;
+		this.startTime = initialTime;
+		this.lastTime = 0;
+		this.lastVisit = new long[nodes];
+
+		this.intervalsByNode = new QuantileSketch[nodes];
+		this.idlenessesByNode = new QuantileSketch[nodes];
+		for (int v = 0; v < nodes; v++) {
+			intervalsByNode[v] = new QuantileSketch(precision);
+			idlenessesByNode[v] = new QuantileSketch(precision);
+		}
+		this.allIntervals = new QuantileSketch(precision);
+		this.allIdlenesses = new QuantileSketch(precision);
+	}
+
+	/**
+	 * Calculates the distributions of the visits in the list from the initial time to the
+	 * final time (inclusive).
+	 */
+	public QuantileMetricsReport(int nodes, int initialTime, int finalTime, VisitsList list) {
+		this(nodes, initialTime);
+
+		VisitsList visits = list.filterByTime(initialTime, finalTime);
+		for (int i = 0; i < visits.getNumVisits(); i++) {
+			onVisit(visits.getTime(i), visits.getNode(i), visits.getAgent(i));
+		}
+		finish(finalTime);
+	}
+
+	@Override
+	public void onVisit(long time, int node, int agent) {
+		time -= startTime;
+		if (time < lastTime) {
+			throw new IllegalArgumentException("Visits must be given in order of time: "
+					+ (time + startTime) + " < " + (lastTime + startTime));
+		}
+		lastTime = time;
+
+		addInterval(node, time - lastVisit[node]);
+		lastVisit[node] = time;
+	}
+
+	/**
+	 * Counts the last interval of each node, from its last visit to the final time (inclusive).
+	 * It must be called only once, after the last visit.
+	 */
+	public void finish(long finalTime) {
+		finalTime -= startTime;
+		for (int v = 0; v < numNodes; v++) {
+			addInterval(v, finalTime + 1 - lastVisit[v]);
+		}
+	}
+
+	private void addInterval(int node, long interval) {
+		intervalsByNode[node].add(interval);
+		allIntervals.add(interval);
+		idlenessesByNode[node].addRange(1, interval);
+		allIdlenesses.addRange(1, interval);
+	}
+
+	/**
+	 * Adds the intervals and idlenesses counted in the other report, which must have the
+	 * same number of nodes and the same precision.
+	 */
+	public void merge(QuantileMetricsReport other) {
+		if (other.numNodes != this.numNodes) {
+			throw new IllegalArgumentException("Reports with different numbers of nodes: "
+					+ this.numNodes + " and " + other.numNodes);
+		}
+		for (int v = 0; v < numNodes; v++) {
+			intervalsByNode[v].merge(other.intervalsByNode[v]);
+			idlenessesByNode[v].merge(other.idlenessesByNode[v]);
+		}
+		allIntervals.merge(other.allIntervals);
+		allIdlenesses.merge(other.allIdlenesses);
+	}
+
+	/**
+	 * Distribution of the intervals between consecutive visits, of all nodes.
+	 */
+	public QuantileSketch getIntervals() {
+		return allIntervals;
+	}
+
+	/**
+	 * Distribution of the intervals between consecutive visits to the node.
+	 */
+	public QuantileSketch getIntervals(int node) {
+		return intervalsByNode[node];
+	}
+
+	/**
+	 * Distribution of the instantaneous idlenesses of all nodes in all turns.
+	 */
+	public QuantileSketch getIdlenesses() {
+		return allIdlenesses;
+	}
+
+	/**
+	 * Distribution of the instantaneous idlenesses of the node in all turns.
+	 */
+	public QuantileSketch getIdlenesses(int node) {
+		return idlenessesByNode[node];
+	}
+
+	/**
+	 * Approximate percentile (from 0 to 100) of the intervals, of all nodes.
+	 */
+	public long getIntervalPercentile(double percentile) {
+		return allIntervals.getPercentile(percentile);
+	}
+
+	/**
+	 * Approximate percentile (from 0 to 100) of the instantaneous idlenesses, of all nodes.
+	 */
+	public long getIdlenessPercentile(double percentile) {
+		return allIdlenesses.getPercentile(percentile);
+	}
+
+	public String toString() {
+		return "intervals: " + allIntervals + "\nidlenesses: " + allIdlenesses;
+	}
+
+}
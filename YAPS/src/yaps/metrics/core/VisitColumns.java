@@ -0,0 +1,183 @@
+package yaps.metrics.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Storage of the visits in columns (parallel arrays of primitive values), shared by
+ * a VisitsList and the views created from it. It also keeps indexes of the positions
+ * of the visits of each node and of each agent, created only when needed.
+ *
+ * @author Pablo A. Sampaio
+ */
+class VisitColumns {
+	long[] times;
+	int[] nodes;
+	int[] agents;
+	int size;
+
+	boolean shared;  // if some view (other than the creator) uses these columns
+
+	private int modifications;
+	private Index nodeIndex;
+	private Index agentIndex;
+
+
+	VisitColumns(int capacity) {
+		capacity = Math.max(capacity, 8);
+		times = new long[capacity];
+		nodes = new int[capacity];
+		agents = new int[capacity];
+		size = 0;
+	}
+
+	void append(long time, int node, int agent) {
+		ensureCapacity(size + 1);
+		times[size] = time;
+		nodes[size] = node;
+		agents[size] = agent;
+		size ++;
+		modifications ++;
+	}
+
+	void insert(int position, long time, int node, int agent) {
+		ensureCapacity(size + 1);
+		System.arraycopy(times, position, times, position + 1, size - position);
+		System.arraycopy(nodes, position, nodes, position + 1, size - position);
+		System.arraycopy(agents, position, agents, position + 1, size - position);
+		times[position] = time;
+		nodes[position] = node;
+		agents[position] = agent;
+		size ++;
+		modifications ++;
+	}
+
+	/**
+	 * Sorts the visits by time, keeping the order of the visits with equal times.
+	 */
+	void sortByTime() {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		mergeSort(order, new int[size], 0, size);
+
+		long[] newTimes = new long[times.length];
+		int[] newNodes = new int[times.length];
+		int[] newAgents = new int[times.length];
+		for (int i = 0; i < size; i++) {
+			newTimes[i] = times[order[i]];
+			newNodes[i] = nodes[order[i]];
+			newAgents[i] = agents[order[i]];
+		}
+		times = newTimes;
+		nodes = newNodes;
+		agents = newAgents;
+		modifications ++;
+	}
+
+	// stable sort of the positions in order[start..end-1] by time; the halves that
+	// are already in order are not merged (so, sorted runs take linear time)
+	private void mergeSort(int[] order, int[] temp, int start, int end) {
+		if (end - start < 2) {
+			return;
+		}
+		int middle = (start + end) >>> 1;
+		mergeSort(order, temp, start, middle);
+		mergeSort(order, temp, middle, end);
+
+		if (times[order[middle - 1]] <= times[order[middle]]) {
+			return;
+		}
+
+		System.arraycopy(order, start, temp, start, end - start);
+		int i = start, j = middle, k = start;
+		while (i < middle && j < end) {
+			if (times[temp[j]] < times[temp[i]]) {
+				order[k++] = temp[j++];
+			} else {
+				order[k++] = temp[i++];
+			}
+		}
+		while (i < middle) {
+			order[k++] = temp[i++];
+		}
+		while (j < end) {
+			order[k++] = temp[j++];
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > times.length) {
+			int newCapacity = Math.max(capacity, 2 * times.length);
+			times = Arrays.copyOf(times, newCapacity);
+			nodes = Arrays.copyOf(nodes, newCapacity);
+			agents = Arrays.copyOf(agents, newCapacity);
+		}
+	}
+
+	/**
+	 * Index of the positions of the visits by node.
+	 */
+	Index getNodeIndex() {
+		if (nodeIndex == null || nodeIndex.modifications != modifications) {
+			nodeIndex = new Index(nodes, size, modifications);
+		}
+		return nodeIndex;
+	}
+
+	/**
+	 * Index of the positions of the visits by agent.
+	 */
+	Index getAgentIndex() {
+		if (agentIndex == null || agentIndex.modifications != modifications) {
+			agentIndex = new Index(agents, size, modifications);
+		}
+		return agentIndex;
+	}
+
+	/**
+	 * The positions of the visits grouped by a key (node or agent). The positions 
+	 * with key k are in entries[offsets[k+1] .. offsets[k+2]-1], in increasing order
+	 * (so, ordered by time). Key -1 is used for unknown agents.
+	 */
+	static class Index {
+		final int[] offsets;
+		final int[] entries;
+		final int modifications;
+
+		Index(int[] keys, int size, int modifications) {
+			int maxKey = -1;
+			for (int i = 0; i < size; i++) {
+				if (keys[i] > maxKey) {
+					maxKey = keys[i];
+				}
+			}
+
+			// counting sort of the positions by key (stable)
+			this.offsets = new int[maxKey + 3];
+			this.entries = new int[size];
+			this.modifications = modifications;
+
+			for (int i = 0; i < size; i++) {
+				offsets[keys[i] + 2] ++;
+			}
+			for (int k = 2; k < offsets.length; k++) {
+				offsets[k] += offsets[k - 1];
+			}
+			int[] next = Arrays.copyOf(offsets, offsets.length);
+			for (int i = 0; i < size; i++) {
+				entries[next[keys[i] + 1] ++] = i;
+			}
+		}
+
+		int start(int key) {
+			return (key < -1 || key + 2 >= offsets.length) ? 0 : offsets[key + 1];
+		}
+
+		int end(int key) {
+			return (key < -1 || key + 2 >= offsets.length) ? 0 : offsets[key + 2];
+		}
+	}
+
+}
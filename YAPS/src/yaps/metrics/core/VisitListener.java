@@ -0,0 +1,17 @@
+package yaps.metrics.core;
+
+
+/**
+ * Receives the visits done in a simulation, as they happen.
+ * See SimulatorConnector.addVisitListener().
+ * 
+ * @author Pablo A. Sampaio
+ */
+public interface VisitListener {
+
+	/**
+	 * Called for each visit, in non-decreasing order of time.
+	 */
+	public void onVisit(long time, int node, int agent);
+
+}
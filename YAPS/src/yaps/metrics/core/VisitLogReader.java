@@ -0,0 +1,227 @@
+package yaps.metrics.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Reads the visits of a file created by VisitLogWriter. The chunks of visits are mapped in
+ * memory (read-only), and the visits are decoded as they are given to a VisitListener, so
+ * they can be streamed to the reports that are listeners (e.g. OnlineMetricsReport,
+ * WindowMetricsReport, QuantileMetricsReport) or collected in a VisitsList (which is also
+ * a listener). The visits of a period of time are found by a binary search in the index
+ * of the chunks, without reading the chunks before the period.
+ * <br><br>
+ * Since a single buffer can't map more than 2 GB, the chunks are mapped in segments with
+ * many complete chunks each.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class VisitLogReader {
+	private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+	private long numVisits;
+	private int numChunks;
+
+	private long[] chunkPositions;
+	private long[] chunkFirstTimes;
+	private long[] chunkLastTimes;
+
+	private ByteBuffer[] segments;
+	private int[] chunkSegment;     // segment of each chunk
+	private int[] chunkOffset;      // position of each chunk in its segment
+
+
+	/**
+	 * Opens and maps the file. The file is closed at the end of the constructor (the
+	 * buffers remain valid).
+	 */
+	public VisitLogReader(File logFile) throws IOException {
+		try (RandomAccessFile input = new RandomAccessFile(logFile, "r")) {
+			FileChannel channel = input.getChannel();
+			long fileSize = channel.size();
+
+			if (fileSize < VisitLogWriter.HEADER_BYTES + VisitLogWriter.FOOTER_BYTES) {
+				throw new IOException("Incomplete visits log: " + logFile);
+			}
+
+			ByteBuffer header = readFully(channel, 0, VisitLogWriter.HEADER_BYTES);
+			if (header.getInt() != VisitLogWriter.FILE_MAGIC || header.getInt() != VisitLogWriter.FILE_VERSION) {
+				throw new IOException("Not a visits log (or unsupported version): " + logFile);
+			}
+
+			ByteBuffer footer = readFully(channel, fileSize - VisitLogWriter.FOOTER_BYTES, VisitLogWriter.FOOTER_BYTES);
+			long indexPosition = footer.getLong();
+			numVisits = footer.getLong();
+			numChunks = footer.getInt();
+			if (footer.getInt() != VisitLogWriter.FILE_MAGIC
+					|| indexPosition + (long)numChunks * VisitLogWriter.INDEX_ENTRY_BYTES + VisitLogWriter.FOOTER_BYTES != fileSize) {
+				throw new IOException("Visits log without index (not closed?): " + logFile);
+			}
+
+			ByteBuffer index = readFully(channel, indexPosition, numChunks * VisitLogWriter.INDEX_ENTRY_BYTES);
+			chunkPositions = new long[numChunks];
+			chunkFirstTimes = new long[numChunks];
+			chunkLastTimes = new long[numChunks];
+			for (int c = 0; c < numChunks; c++) {
+				chunkPositions[c] = index.getLong();
+				chunkFirstTimes[c] = index.getLong();
+				chunkLastTimes[c] = index.getLong();
+				index.getInt();
+			}
+
+			mapChunks(channel, indexPosition);
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(bytes);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("Unexpected end of the visits log");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	// maps the chunks in segments (each with the consecutive chunks that fit in it)
+	private void mapChunks(FileChannel channel, long chunksEnd) throws IOException {
+		chunkSegment = new int[numChunks];
+		chunkOffset = new int[numChunks];
+
+		int numSegments = 0;
+		long segmentStart = -1;
+
+		for (int c = 0; c < numChunks; c++) {
+			long chunkEnd = (c + 1 < numChunks) ? chunkPositions[c + 1] : chunksEnd;
+			if (segmentStart == -1 || chunkEnd - segmentStart > MAX_SEGMENT_BYTES) {
+				segmentStart = chunkPositions[c];
+				numSegments ++;
+			}
+			chunkSegment[c] = numSegments - 1;
+			chunkOffset[c] = (int)(chunkPositions[c] - segmentStart);
+		}
+
+		segments = new ByteBuffer[numSegments];
+
+		int c = 0;
+		for (int s = 0; s < numSegments; s++) {
+			long start = chunkPositions[c];
+			while (c < numChunks && chunkSegment[c] == s) {
+				c ++;
+			}
+			long end = (c < numChunks) ? chunkPositions[c] : chunksEnd;
+			segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		}
+	}
+
+	public long getNumVisits() {
+		return numVisits;
+	}
+
+	/**
+	 * Time of the first visit, or -1 if there are no visits.
+	 */
+	public long getFirstTime() {
+		return numChunks == 0 ? -1 : chunkFirstTimes[0];
+	}
+
+	/**
+	 * Time of the last visit, or -1 if there are no visits.
+	 */
+	public long getLastTime() {
+		return numChunks == 0 ? -1 : chunkLastTimes[numChunks - 1];
+	}
+
+	/**
+	 * Gives all the visits to the listener, in order.
+	 */
+	public void read(VisitListener listener) {
+		read(Long.MIN_VALUE, Long.MAX_VALUE, listener);
+	}
+
+	/**
+	 * Gives to the listener the visits from time "from" to time "to" (inclusive), in order.
+	 */
+	public void read(long from, long to, VisitListener listener) {
+		// first chunk with visits at or after "from"
+		int low = 0, high = numChunks;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (chunkLastTimes[middle] < from) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		for (int c = low; c < numChunks && chunkFirstTimes[c] <= to; c++) {
+			readChunk(c, from, to, listener);
+		}
+	}
+
+	private void readChunk(int c, long from, long to, VisitListener listener) {
+		ByteBuffer buffer = segments[chunkSegment[c]].duplicate();
+		buffer.position(chunkOffset[c]);
+
+		int visits = buffer.getInt();
+		buffer.getInt();   // bytes of the visits
+		long time = buffer.getLong();
+
+		long first;
+		int node, zigzag;
+		int agent = -1;
+
+		// see the format in VisitLogWriter
+		for (int i = 0; i < visits; i++) {
+			first = getVarLong(buffer);
+			if (first > 1) {
+				time += first >>> 1;
+				agent = -1;
+			}
+			node = (int)getVarLong(buffer);
+			if ((first & 1) == 1) {
+				agent ++;
+			} else {
+				zigzag = (int)getVarLong(buffer);
+				agent = (zigzag >>> 1) ^ -(zigzag & 1);
+			}
+
+			if (time > to) {
+				return;
+			}
+			if (time >= from) {
+				listener.onVisit(time, node, agent);
+			}
+		}
+	}
+
+	/**
+	 * Returns the visits from time "from" to time "to" (inclusive) in a new list.
+	 */
+	public VisitsList toVisitsList(long from, long to) {
+		VisitsList list = new VisitsList();
+		read(from, to, list);
+		return list;
+	}
+
+	// see VisitLogWriter.putVarLong()
+	private static long getVarLong(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+			b = buffer.get();
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+
+		return value;
+	}
+
+}
@@ -0,0 +1,231 @@
+package yaps.metrics.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+/**
+ * Writes visits in a compact binary file, to be read with VisitLogReader. It can be
+ * registered as a VisitListener in the simulator, so the visits go to the disk instead of
+ * being kept in memory. The visits must be given in order of time.
+ * <br><br>
+ * The visits are written in chunks of (at most) CHUNK_VISITS visits, as variable-length
+ * integers (7 bits per byte). In each chunk, each visit has:
+ * <ul>
+ * <li> the difference to the time of the previous visit, multiplied by 2, plus 1 if the
+ *      agent is the next of the previous visit in the same time (or agent 0, in the first
+ *      visit of a time);
+ * <li> the node;
+ * <li> the agent (zigzag-encoded, for agent -1), only if it is not the next agent.
+ * </ul>
+ * So, a visit usually takes 2 to 4 bytes. The file has this format (numbers in big-endian):
+ * <ul>
+ * <li> header: magic number, version (ints);
+ * <li> chunks: number of visits, bytes of the visits (ints), time of the first visit (long),
+ *      followed by the visits;
+ * <li> index, with one entry per chunk: position of the chunk in the file, times of the
+ *      first and of the last visits (longs), number of visits (int);
+ * <li> footer: position of the index, number of visits (longs), number of chunks, magic
+ *      number (ints).
+ * </ul>
+ * The file is complete only after close().
+ *
+ * @author Pablo A. Sampaio
+ */
+public class VisitLogWriter implements VisitListener, Closeable {
+	static final int FILE_MAGIC = 0x5941564C;  // "YAVL"
+	static final int FILE_VERSION = 1;
+	static final int HEADER_BYTES = 8;
+	static final int CHUNK_HEADER_BYTES = 16;
+	static final int INDEX_ENTRY_BYTES = 28;
+	static final int FOOTER_BYTES = 24;
+
+	public static final int CHUNK_VISITS = 4096;
+
+	private static final int MAX_VISIT_BYTES = 20;  // 10 (time) + 5 (node) + 5 (agent)
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private long position;       // in the file
+
+	private ByteBuffer chunk;    // the chunk being filled (starting with its header)
+	private int chunkVisits;
+	private long chunkFirstTime;
+	private long lastTime;
+	private int lastAgent;       // in the last time (-1 in a new time)
+
+	// index of the chunks already written
+	private long[] chunkPositions;
+	private long[] chunkFirstTimes;
+	private long[] chunkLastTimes;
+	private int[] chunkSizes;
+	private int numChunks;
+
+	private long totalVisits;
+
+
+	public VisitLogWriter(File logFile) throws IOException {
+		this.file = new RandomAccessFile(logFile, "rw");
+		this.file.setLength(0);
+		this.channel = file.getChannel();
+
+		this.chunk = ByteBuffer.allocate(CHUNK_HEADER_BYTES + CHUNK_VISITS * MAX_VISIT_BYTES);
+		this.chunkVisits = 0;
+		this.lastTime = Long.MIN_VALUE;
+
+		this.chunkPositions = new long[16];
+		this.chunkFirstTimes = new long[16];
+		this.chunkLastTimes = new long[16];
+		this.chunkSizes = new int[16];
+		this.numChunks = 0;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(FILE_MAGIC);
+		header.putInt(FILE_VERSION);
+		header.flip();
+		write(header);
+	}
+
+	/**
+	 * Same as addVisit(), but the IOExceptions are thrown as IllegalStateExceptions.
+	 */
+	@Override
+	public void onVisit(long time, int node, int agent) {
+		try {
+			addVisit(time, node, agent);
+		} catch (IOException e) {
+			throw new IllegalStateException("Error writing the visits log", e);
+		}
+	}
+
+	public void addVisit(long time, int node, int agent) throws IOException {
+		if (time < lastTime) {
+			throw new IllegalArgumentException("Visits must be given in order of time: " + time + " < " + lastTime);
+		}
+		if (node < 0) {
+			throw new IllegalArgumentException("Invalid node: " + node);
+		}
+
+		long delta = 0;
+		if (chunkVisits == 0) {
+			chunkFirstTime = time;
+			chunk.position(CHUNK_HEADER_BYTES);
+			lastAgent = -1;
+		} else {
+			delta = time - lastTime;
+		}
+		if (delta > 0) {
+			lastAgent = -1;
+		}
+
+		boolean nextAgent = (agent == lastAgent + 1);
+		putVarLong(chunk, 2 * delta + (nextAgent ? 1 : 0));
+		putVarLong(chunk, node);
+		if (!nextAgent) {
+			putVarLong(chunk, ((agent << 1) ^ (agent >> 31)) & 0xFFFFFFFFL);  // zigzag
+		}
+
+		lastTime = time;
+		lastAgent = agent;
+		chunkVisits ++;
+		totalVisits ++;
+
+		if (chunkVisits == CHUNK_VISITS) {
+			writeChunk();
+		}
+	}
+
+	/**
+	 * Writes all the visits of the list (which must be after the visits already written).
+	 */
+	public void addAll(VisitsList list) throws IOException {
+		for (int i = 0; i < list.getNumVisits(); i++) {
+			addVisit(list.getTime(i), list.getNode(i), list.getAgent(i));
+		}
+	}
+
+	public long getNumVisits() {
+		return totalVisits;
+	}
+
+	private void writeChunk() throws IOException {
+		if (numChunks == chunkPositions.length) {
+			int newLength = 2 * numChunks;
+			chunkPositions = Arrays.copyOf(chunkPositions, newLength);
+			chunkFirstTimes = Arrays.copyOf(chunkFirstTimes, newLength);
+			chunkLastTimes = Arrays.copyOf(chunkLastTimes, newLength);
+			chunkSizes = Arrays.copyOf(chunkSizes, newLength);
+		}
+		chunkPositions[numChunks] = position;
+		chunkFirstTimes[numChunks] = chunkFirstTime;
+		chunkLastTimes[numChunks] = lastTime;
+		chunkSizes[numChunks] = chunkVisits;
+		numChunks ++;
+
+		chunk.putInt(0, chunkVisits);
+		chunk.putInt(4, chunk.position() - CHUNK_HEADER_BYTES);
+		chunk.putLong(8, chunkFirstTime);
+		chunk.flip();
+		write(chunk);
+
+		chunk.clear();
+		chunkVisits = 0;
+	}
+
+	private void write(ByteBuffer buffer) throws IOException {
+		position += buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Writes the last chunk, the index and the footer, and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (file == null) {
+			return;
+		}
+		try {
+			if (chunkVisits > 0) {
+				writeChunk();
+			}
+
+			long indexPosition = position;
+			ByteBuffer index = ByteBuffer.allocate(numChunks * INDEX_ENTRY_BYTES + FOOTER_BYTES);
+
+			for (int c = 0; c < numChunks; c++) {
+				index.putLong(chunkPositions[c]);
+				index.putLong(chunkFirstTimes[c]);
+				index.putLong(chunkLastTimes[c]);
+				index.putInt(chunkSizes[c]);
+			}
+			index.putLong(indexPosition);
+			index.putLong(totalVisits);
+			index.putInt(numChunks);
+			index.putInt(FILE_MAGIC);
+			index.flip();
+			write(index);
+		} finally {
+			file.close();
+			file = null;
+		}
+	}
+
+	// writes 7 bits per byte, from the lowest; the highest bit of each byte
+	// indicates if there are more bytes
+	static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+}
@@ -1,7 +1,6 @@
 package yaps.metrics.core;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -9,163 +8,393 @@ import java.util.List;
  * This class is a list of visits in a simulation. It is used to calculate metrics of 
  * the simulation (to measure how "efficiently" the nodes were visited). 
  * <br><br>
- * The visits must be inserted ordered by time.
+ * The visits must be inserted ordered by time. A visit with time lower than the time 
+ * of the last visit is inserted in its position (after the visits with equal time).
+ * To add many visits out of order, use addVisitUnsorted(): the visits are appended and 
+ * sorted only once, when the list is read. Many lists can be joined with merge().
+ * <br><br>
+ * The visits are stored in columns (arrays of times, nodes and agents). The filters 
+ * return views that share the columns of the original list, without copying them. 
+ * A view is copied only if it is changed. The filters by node and by agent use indexes 
+ * of the columns (created in the first filter call) and the filters by time use binary 
+ * search.
  * 
  * @author Pablo A. Sampaio
  */
-public class VisitsList {
-	private List<Visit> visitList;
-	private long lastTime;
+public class VisitsList implements VisitListener {
+	private VisitColumns columns;
+
+	// this list has the visits in positions 'from' to 'to'-1 of the columns or, if 
+	// 'entries' is not null, in the positions given by entries[from] .. entries[to-1]
+	private int[] entries;
+	private int from, to;
+	
+	private boolean unsorted;  // if visits were appended out of order by addVisitUnsorted()
 		
 	public VisitsList() {
-		this.visitList = new LinkedList<Visit>();
-		this.lastTime = 0;
+		this.columns = new VisitColumns(16);
+		this.entries = null;
+		this.from = 0;
+		this.to = 0;
 	}
 
 	public VisitsList(List<Visit> visits) {
-		this.visitList = new ArrayList<Visit>(visits.size());
-		this.lastTime = 0;
+		this.columns = new VisitColumns(visits.size());
+		this.entries = null;
+		this.from = 0;
+		this.to = 0;
 		for (Visit v: visits){
-			this.addVisit(v);
+			this.addVisitUnsorted(v.time, v.node, v.agent);
 		}
 	}
+
+	// creates a view
+	private VisitsList(VisitColumns columns, int[] entries, int from, int to) {
+		this.columns = columns;
+		this.entries = entries;
+		this.from = from;
+		this.to = to;
+		columns.shared = true;
+	}
 	
 	public void addVisit(Visit visit) {
-		if (visit.time < this.lastTime) {
-			this.orderedAddVisit(visit);
-		}
-		visitList.add(visit);
-		this.lastTime = visit.time;
+		addVisit(visit.time, visit.node, visit.agent);
 	}
 	
 	public void addVisit(int time, int node, int agent) {
-		addVisit(new Visit(time, node, agent));
+		addVisit((long)time, node, agent);
 	}
 
 	public void addVisit(int time, int node) {
-		visitList.add(new Visit(time, node, -1));
+		addVisit((long)time, node, -1);
 	}
 
-	public int getNumVisits() {
-		return visitList.size();
-	}
-	
-	public Visit getVisit(int index) {
-		return visitList.get(index);
+	/**
+	 * Adds the visit (so a VisitsList can record the visits of a simulation).
+	 */
+	@Override
+	public void onVisit(long time, int node, int agent) {
+		addVisit(time, node, agent);
 	}
 
-	public VisitsList filterByAgent(int agent) {
-		List<Visit> filteredVisits = new LinkedList<Visit>();
+	private void addVisit(long time, int node, int agent) {
+		checkVisit(node, agent);
+		sortPending();
+
+		int size = getNumVisits();
 		
-		for (Visit visit : visitList) {
-			if (visit.agent == agent) {
-				filteredVisits.add(visit);
+		if (size == 0 || time >= getTime(size - 1)) {
+			// appends in the columns, if this list ends in the end of the columns
+			if (entries != null || to != columns.size) {
+				copyColumns();
 			}
+			columns.append(time, node, agent);
+			to ++;
+			
+		} else {
+			// inserts in the middle: copies the columns if they are used by other lists
+			if (entries != null || from != 0 || to != columns.size || columns.shared) {
+				copyColumns();
+			}
+			columns.insert(upperBound(time), time, node, agent);
+			to ++;
 		}
-		
-		return new VisitsList(filteredVisits);
 	}
 
-	public VisitsList filterByVertex(int node) {
-		List<Visit> filteredVisits = new LinkedList<Visit>();
+	/**
+	 * Appends the visit in the end of the list, even if it is out of order. The list is 
+	 * sorted by time only when it is read (keeping the order of the visits with equal 
+	 * times, so the result is the same of addVisit()). So, n visits are added in 
+	 * O(n log n) time, instead of O(n) per visit inserted in the middle.
+	 */
+	public void addVisitUnsorted(long time, int node, int agent) {
+		checkVisit(node, agent);
 		
-		for (Visit visit : visitList) {
-			if (visit.node == node) {
-				filteredVisits.add(visit);
-			}
+		int size = getNumVisits();
+		if (entries != null || from != 0 || to != columns.size || columns.shared) {
+			copyColumns();
+		}
+		if (size > 0 && time < columns.times[to - 1]) {
+			unsorted = true;
+		}
+		columns.append(time, node, agent);
+		to ++;
+	}
+
+	private static void checkVisit(int node, int agent) {
+		if (node < 0 || agent < -1) {
+			throw new IllegalArgumentException("Invalid visit: node " + node + ", agent " + agent);
 		}
-		
-		return new VisitsList(filteredVisits);
+	}
+
+	// sorts the visits appended out of order (if any)
+	private void sortPending() {
+		if (unsorted) {
+			columns.sortByTime();
+			unsorted = false;
+		}
+	}
+
+	// makes this list the only user of a new copy of its visits
+	private void copyColumns() {
+		int size = getNumVisits();
+		VisitColumns newColumns = new VisitColumns(size + size / 2 + 1);
+		int pos;
+
+		for (int i = 0; i < size; i++) {
+			pos = position(i);
+			newColumns.append(columns.times[pos], columns.nodes[pos], columns.agents[pos]);
+		}
+
+		this.columns = newColumns;
+		this.entries = null;
+		this.from = 0;
+		this.to = size;
+	}
+
+	private int position(int index) {
+		return (entries == null) ? (from + index) : entries[from + index];
+	}
+
+	public int getNumVisits() {
+		return to - from;
 	}
 	
-	// inclusive limits (closed interval)
-	public VisitsList filterByTime(int from, int to) {
-		List<Visit> filteredVisits = new LinkedList<Visit>();
-		
-		for (Visit visit : visitList) {
-			if (visit.time >= from && visit.time <= to) {
-				filteredVisits.add(visit);
+	public Visit getVisit(int index) {
+		int pos = position(checkIndex(index));
+		return new Visit(columns.times[pos], columns.nodes[pos], columns.agents[pos]);
+	}
+
+	public long getTime(int index) {
+		return columns.times[position(checkIndex(index))];
+	}
+
+	public int getNode(int index) {
+		return columns.nodes[position(checkIndex(index))];
+	}
+
+	public int getAgent(int index) {
+		return columns.agents[position(checkIndex(index))];
+	}
+
+	private int checkIndex(int index) {
+		sortPending();
+		if (index < 0 || index >= getNumVisits()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + getNumVisits());
+		}
+		return index;
+	}
+
+	/**
+	 * Time of the last visit (or 0, if the list is empty).
+	 */
+	public long getLastTime() {
+		return (getNumVisits() == 0) ? 0 : getTime(getNumVisits() - 1);
+	}
+
+	public VisitsList filterByAgent(int agent) {
+		sortPending();
+		return filterByKey(columns.getAgentIndex(), agent, false);
+	}
+
+	public VisitsList filterByVertex(int node) {
+		sortPending();
+		return filterByKey(columns.getNodeIndex(), node, true);
+	}
+
+	// creates the index used by filterByVertex() in advance, so that
+	// the filter can be called by many threads at the same time
+	void prepareVertexFilter() {
+		sortPending();
+		columns.getNodeIndex();
+	}
+
+	private VisitsList filterByKey(VisitColumns.Index index, int key, boolean byNode) {
+		if (entries == null) {
+			// the positions of the key in the index that are in the range of this list
+			int start = lowerBound(index.entries, index.start(key), index.end(key), from);
+			int end = lowerBound(index.entries, start, index.end(key), to);
+			return new VisitsList(columns, index.entries, start, end);
+
+		} else {
+			int[] column = byNode ? columns.nodes : columns.agents;
+			int[] filtered = new int[getNumVisits()];
+			int count = 0;
+			
+			for (int i = from; i < to; i++) {
+				if (column[entries[i]] == key) {
+					filtered[count++] = entries[i];
+				}
 			}
+			
+			return new VisitsList(columns, Arrays.copyOf(filtered, count), 0, count);
 		}
-		
-		return new VisitsList(filteredVisits);
 	}
 
-	// parameter 'from' is an inclusive limit (closed interval)
-	public VisitsList filterByTime(int from) {
-		List<Visit> filteredVisits = new LinkedList<Visit>();
-		
-		for (Visit visit : visitList) {
-			if (visit.time >= from) {
-				filteredVisits.add(visit);
+	// first position in 'array' from 'start' to 'end'-1 with value >= 'value' (or 'end')
+	private static int lowerBound(int[] array, int start, int end, int value) {
+		int middle;
+		while (start < end) {
+			middle = (start + end) >>> 1;
+			if (array[middle] < value) {
+				start = middle + 1;
+			} else {
+				end = middle;
 			}
 		}
-		
-		return new VisitsList(filteredVisits);
+		return start;
 	}
 
-	private void orderedAddVisit(Visit v){	
-		int left = 0;
-		int right = this.visitList.size();
-		int midle = (left + right)/2;
-		
-		Visit u = this.visitList.get(midle);
-		
-		while (left < right - 1) {
-			if (v.time > u.time) {
-				left = midle;
+	// first index (in this list) of a visit with time >= 'time'
+	private int lowerBoundTime(long time) {
+		sortPending();
+		int start = 0, end = getNumVisits(), middle;
+		while (start < end) {
+			middle = (start + end) >>> 1;
+			if (columns.times[position(middle)] < time) {
+				start = middle + 1;
 			} else {
-				right = midle;
+				end = middle;
 			}
-			
-			midle = (left + right)/2;
-			u = this.visitList.get(midle);
 		}
-		
-		if (v.time > u.time) {
-			this.visitList.add(midle + 1, v);
-		} else {
-			this.visitList.add(midle, v);
-		}		
+		return start;
+	}
+
+	// first index (in this list) of a visit with time > 'time'
+	private int upperBound(long time) {
+		return (time == Long.MAX_VALUE) ? getNumVisits() : lowerBoundTime(time + 1);
+	}
+	
+	// inclusive limits (closed interval)
+	public VisitsList filterByTime(int from, int to) {
+		int start = lowerBoundTime(from);
+		int end = Math.max(start, upperBound(to));
+		return new VisitsList(columns, entries, this.from + start, this.from + end);
+	}
+
+	// parameter 'from' is an inclusive limit (closed interval)
+	public VisitsList filterByTime(int from) {
+		int start = lowerBoundTime(from);
+		return new VisitsList(columns, entries, this.from + start, this.to);
 	}
 
 	@Override
 	public String toString() {		
-		if(this.visitList.size() < 20){
-			return "VisitsList : lastTime=" + lastTime + " visitList=" + visitList;
+		if (getNumVisits() < 20) {
+			StringBuilder builder = new StringBuilder("[");
+			for (int i = 0; i < getNumVisits(); i++) {
+				if (i > 0) {
+					builder.append(", ");
+				}
+				builder.append(getVisit(i));
+			}
+			builder.append("]");
+			return "VisitsList : lastTime=" + getLastTime() + " visitList=" + builder;
 		}		
-		return "VisitsList : lastTime=" + lastTime + " visitListSize=" + this.visitList.size();
+		return "VisitsList : lastTime=" + getLastTime() + " visitListSize=" + getNumVisits();
 	}
 
 	public void addVisitList(VisitsList other) {
-		List<Visit> newList = new ArrayList<Visit>(this.visitList.size() + other.visitList.size());
-		Visit u, v;
-		int i = 0, j = 0;
+		this.sortPending();
+		other.sortPending();
+		int thisSize = this.getNumVisits();
+		int otherSize = other.getNumVisits();
+		VisitColumns newColumns = new VisitColumns(thisSize + otherSize);
+		int i = 0, j = 0, pos;
 		
-		while (i < this.visitList.size() && j < other.visitList.size()){
-			u = this.visitList.get(i);
-			v = other.visitList.get(j);
-			
-			if (u.time < v.time) {
-				newList.add(u);
+		while (i < thisSize || j < otherSize) {
+			if (j == otherSize || (i < thisSize && this.getTime(i) < other.getTime(j))) {
+				pos = this.position(i);
+				newColumns.append(this.columns.times[pos], this.columns.nodes[pos], this.columns.agents[pos]);
 				i++;
 			} else {
-				newList.add(v);
+				pos = other.position(j);
+				newColumns.append(other.columns.times[pos], other.columns.nodes[pos], other.columns.agents[pos]);
 				j++;
 			}			
 		}
+
+		this.columns = newColumns;
+		this.entries = null;
+		this.from = 0;
+		this.to = newColumns.size;
+	}
+
+	/**
+	 * Merges many lists (e.g. with the visits of each agent) in a new list ordered by time, 
+	 * with a heap of the next visits of the lists. It takes O(n log k) time, for n visits 
+	 * in k lists. The visits with equal times are kept in the order of the lists.
+	 */
+	public static VisitsList merge(List<VisitsList> lists) {
+		int k = lists.size();
+		VisitsList[] sources = lists.toArray(new VisitsList[k]);
+		int total = 0;
+		
+		for (VisitsList list : sources) {
+			list.sortPending();
+			total += list.getNumVisits();
+		}
 		
-		while (j < other.visitList.size()){
-			newList.add(other.visitList.get(j));
-			j++;
-		}		
-		while (i < this.visitList.size()){
-			newList.add(this.visitList.get(i));
-			i++;
+		VisitColumns merged = new VisitColumns(total);
+		int[] next = new int[k];        // index of the next visit of each list
+		long[] nextTime = new long[k];
+		int[] heap = new int[k];        // lists ordered by (nextTime, list)
+		int heapSize = 0;
+		
+		for (int s = 0; s < k; s++) {
+			if (sources[s].getNumVisits() > 0) {
+				nextTime[s] = sources[s].columns.times[sources[s].position(0)];
+				heap[heapSize++] = s;
+			}
+		}
+		for (int i = heapSize / 2 - 1; i >= 0; i--) {
+			siftDown(heap, heapSize, i, nextTime);
 		}
+		
+		VisitsList source;
+		int s, pos;
+		
+		while (heapSize > 0) {
+			s = heap[0];
+			source = sources[s];
+			pos = source.position(next[s]);
+			merged.append(source.columns.times[pos], source.columns.nodes[pos], source.columns.agents[pos]);
+			next[s] ++;
+			
+			if (next[s] < source.getNumVisits()) {
+				nextTime[s] = source.columns.times[source.position(next[s])];
+			} else {
+				heapSize --;
+				heap[0] = heap[heapSize];
+			}
+			siftDown(heap, heapSize, 0, nextTime);
+		}
+		
+		VisitsList result = new VisitsList();
+		result.columns = merged;
+		result.to = merged.size;
+		return result;
+	}
+
+	private static void siftDown(int[] heap, int heapSize, int i, long[] nextTime) {
+		int element = heap[i];
+		int child;
+		
+		while ((child = 2 * i + 1) < heapSize) {
+			if (child + 1 < heapSize && precedes(heap[child + 1], heap[child], nextTime)) {
+				child ++;
+			}
+			if (!precedes(heap[child], element, nextTime)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = element;
+	}
 
-		this.lastTime = (this.lastTime > other.lastTime ? this.lastTime : other.lastTime);
-		this.visitList = newList;		
+	private static boolean precedes(int list1, int list2, long[] nextTime) {
+		return nextTime[list1] < nextTime[list2] || (nextTime[list1] == nextTime[list2] && list1 < list2);
 	}
 	
 }
@@ -0,0 +1,400 @@
+package yaps.metrics.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Calculates the idleness and interval metrics in a sliding window of time, producing a 
+ * snapshot of the metrics at regular checkpoints, in a single pass over the visits. 
+ * For a checkpoint at time t, the metrics are calculated in the period from t-windowSize+1 
+ * to t (or from the initial time, if the window is not complete or if windowSize <= 0), 
+ * with the same results of IdlenessMetricsReport and IntervalMetricsReport in the period. 
+ * The checkpoints are at times initialTime+stride-1, initialTime+2*stride-1, etc.
+ * <br><br>
+ * The visits are received in order of time, as a VisitListener (followed by a call to 
+ * finish()), or from a VisitsList. The visits inside the window are kept in a queue, 
+ * linked to the next visit to the same node. The aggregates of the intervals are updated 
+ * when a visit enters or leaves the window:
+ * <ul>
+ * <li> intervals between two visits inside the window (count, sum and sum of squares);
+ * <li> first visit of each node in the window (sum and sum of squares of the times);
+ * <li> last visit of each node in the window (sum and sum of squares of the times).
+ * </ul>
+ * The maximum interval is given by heaps with lazy removal (for the intervals between 
+ * visits and for the first visits) and by a list of the nodes ordered by the last visit.
+ * 
+ * @author Pablo A. Sampaio
+ */
+public class WindowMetricsReport implements VisitListener {
+	private int numNodes;
+	private long startTime;
+	private long windowSize;   // <= 0 for no window (all the period since startTime)
+	private long stride;
+	private long nextCheckpoint;  // relative to startTime
+	private long lastTime;
+
+	// visits in the window (circular queue), identified by sequence numbers 
+	private long[] queueTimes;
+	private int[] queueNodes;
+	private long[] queueNextSame; // next visit to the same node, or -1
+	private int queueMask;
+	private long headSeq, tailSeq;
+
+	private long[] firstSeq;  // first and last visits of each node in the window (or -1)
+	private long[] lastSeq;
+	private int visitedNodes;
+
+	// nodes visited in the window, ordered by the last visit
+	private int[] previous;
+	private int[] next;
+	private int first, last;
+
+	private long innerCount, innerSum, innerSquaredSum;
+	private long sumFirst, sumSquaredFirst;
+	private long sumLast, sumSquaredLast;
+
+	private LazyMaxHeap innerGaps;   // (interval, sequence of its first visit)
+	private LazyMaxHeap firstVisits; // (time, sequence of the visit)
+
+	private List<MetricsSnapshot> snapshots;
+
+	
+	/**
+	 * Receives the visits as a VisitListener. Call finish() after the last visit.
+	 */
+	public WindowMetricsReport(int nodes, long initialTime, int windowSize, int stride) {
+		if (stride < 1) {
+			throw new IllegalArgumentException("Invalid stride: " + stride);
+		}
+		this.numNodes = nodes;
+		this.startTime = initialTime;
+		this.windowSize = windowSize;
+		this.stride = stride;
+		this.nextCheckpoint = stride - 1;
+		this.lastTime = 0;
+
+		allocateQueue(64);
+		this.headSeq = 0;
+		this.tailSeq = 0;
+
+		this.firstSeq = new long[nodes];
+		this.lastSeq = new long[nodes];
+		Arrays.fill(firstSeq, -1);
+		Arrays.fill(lastSeq, -1);
+
+		this.previous = new int[nodes];
+		this.next = new int[nodes];
+		this.first = -1;
+		this.last = -1;
+
+		this.innerGaps = new LazyMaxHeap();
+		this.firstVisits = new LazyMaxHeap();
+		this.snapshots = new ArrayList<MetricsSnapshot>();
+	}
+
+	/**
+	 * Calculates the snapshots of the visits in the list from the initial time to the final 
+	 * time (inclusive).
+	 */
+	public WindowMetricsReport(int nodes, int initialTime, int finalTime, int windowSize, int stride, VisitsList list) {
+		this(nodes, initialTime, windowSize, stride);
+		
+		VisitsList visits = list.filterByTime(initialTime, finalTime);
+		for (int i = 0; i < visits.getNumVisits(); i++) {
+			onVisit(visits.getTime(i), visits.getNode(i), visits.getAgent(i));
+		}
+		finish(finalTime);
+	}
+
+	public List<MetricsSnapshot> getSnapshots() {
+		return snapshots;
+	}
+
+	@Override
+	public void onVisit(long time, int node, int agent) {
+		time -= startTime;
+		if (time < lastTime) {
+			throw new IllegalArgumentException("Visits must be given in order of time: " 
+					+ (time + startTime) + " < " + (lastTime + startTime));
+		}
+		lastTime = time;
+
+		while (nextCheckpoint < time) {
+			takeSnapshot(nextCheckpoint);
+			nextCheckpoint += stride;
+		}
+		
+		enqueue(time, node);
+	}
+
+	/**
+	 * Produces the snapshots of the remaining checkpoints, until the final time (inclusive).
+	 */
+	public void finish(long finalTime) {
+		finalTime -= startTime;
+		while (nextCheckpoint <= finalTime) {
+			takeSnapshot(nextCheckpoint);
+			nextCheckpoint += stride;
+		}
+	}
+
+	private void takeSnapshot(long end) {
+		long begin = (windowSize > 0) ? Math.max(0, end - windowSize + 1) : 0;
+
+		while (headSeq < tailSeq && queueTimes[slot(headSeq)] < begin) {
+			dequeue();
+		}
+
+		long length = end - begin + 1;
+		long unvisited = numNodes - visitedNodes;
+
+		// intervals: between visits + from 'begin' to the first visits + from the last visits 
+		// to 'end'+1 + from 'begin' to 'end'+1 (nodes not visited)
+		long count = innerCount + visitedNodes + numNodes;
+		long sum = innerSum 
+				+ (sumFirst - visitedNodes * begin) 
+				+ (visitedNodes * (end + 1) - sumLast) 
+				+ unvisited * length;
+		long squaredSum = innerSquaredSum 
+				+ (sumSquaredFirst - 2 * begin * sumFirst + visitedNodes * begin * begin)
+				+ (visitedNodes * (end + 1) * (end + 1) - 2 * (end + 1) * sumLast + sumSquaredLast)
+				+ unvisited * length * length;
+
+		long max = -1;
+		if (innerGaps.validateTop()) {
+			max = innerGaps.topKey();
+		}
+		if (firstVisits.validateTop()) {
+			max = Math.max(max, firstVisits.topKey() - begin);
+		}
+		if (first != -1) {
+			max = Math.max(max, end + 1 - queueTimes[slot(lastSeq[first])]);
+		}
+		if (unvisited > 0) {
+			max = Math.max(max, length);
+		}
+
+		double avgIdleness = (double)((squaredSum + sum) / 2) / length / numNodes;
+		double dSum = sum;
+		double stdDev = Math.sqrt(Math.max(0.0d, (squaredSum - dSum * dSum / count) / (count - 1)));
+
+		snapshots.add(new MetricsSnapshot(begin + startTime, end + startTime, avgIdleness, max,
+				dSum / count, max, stdDev, Math.sqrt((double)squaredSum / count)));
+	}
+
+	private void enqueue(long time, int node) {
+		if (tailSeq - headSeq == queueTimes.length) {
+			growQueue();
+		}
+		long seq = tailSeq++;
+		int s = slot(seq);
+		queueTimes[s] = time;
+		queueNodes[s] = node;
+		queueNextSame[s] = -1;
+
+		long prev = lastSeq[node];
+		
+		if (prev != -1) {
+			long prevTime = queueTimes[slot(prev)];
+			long gap = time - prevTime;
+			innerCount ++;
+			innerSum += gap;
+			innerSquaredSum += gap * gap;
+			innerGaps.add(gap, prev);
+			queueNextSame[slot(prev)] = seq;
+
+			sumLast += time - prevTime;
+			sumSquaredLast += time * time - prevTime * prevTime;
+			unlink(node);
+		} else {
+			visitedNodes ++;
+			firstSeq[node] = seq;
+			sumFirst += time;
+			sumSquaredFirst += time * time;
+			firstVisits.add(time, seq);
+			sumLast += time;
+			sumSquaredLast += time * time;
+		}
+		
+		lastSeq[node] = seq;
+		append(node);
+	}
+
+	private void dequeue() {
+		long seq = headSeq;
+		int s = slot(seq);
+		long time = queueTimes[s];
+		int node = queueNodes[s];
+		long nextSeq = queueNextSame[s];
+
+		if (nextSeq == -1) {
+			// it was the only visit to the node in the window
+			visitedNodes --;
+			firstSeq[node] = -1;
+			lastSeq[node] = -1;
+			sumFirst -= time;
+			sumSquaredFirst -= time * time;
+			sumLast -= time;
+			sumSquaredLast -= time * time;
+			unlink(node);
+		} else {
+			long nextTime = queueTimes[slot(nextSeq)];
+			long gap = nextTime - time;
+			innerCount --;
+			innerSum -= gap;
+			innerSquaredSum -= gap * gap;
+			firstSeq[node] = nextSeq;
+			sumFirst += nextTime - time;
+			sumSquaredFirst += nextTime * nextTime - time * time;
+			firstVisits.add(nextTime, nextSeq);
+		}
+
+		headSeq ++;
+	}
+
+	private int slot(long seq) {
+		return (int)seq & queueMask;
+	}
+
+	private void allocateQueue(int capacity) {
+		queueTimes = new long[capacity];
+		queueNodes = new int[capacity];
+		queueNextSame = new long[capacity];
+		queueMask = capacity - 1;
+	}
+
+	private void growQueue() {
+		long[] oldTimes = queueTimes;
+		int[] oldNodes = queueNodes;
+		long[] oldNextSame = queueNextSame;
+		int oldMask = queueMask;
+
+		allocateQueue(2 * oldTimes.length);
+		for (long seq = headSeq; seq < tailSeq; seq++) {
+			queueTimes[slot(seq)] = oldTimes[(int)seq & oldMask];
+			queueNodes[slot(seq)] = oldNodes[(int)seq & oldMask];
+			queueNextSame[slot(seq)] = oldNextSame[(int)seq & oldMask];
+		}
+	}
+
+	private void append(int node) {
+		previous[node] = last;
+		next[node] = -1;
+		if (last == -1) {
+			first = node;
+		} else {
+			next[last] = node;
+		}
+		last = node;
+	}
+
+	private void unlink(int node) {
+		if (previous[node] == -1) {
+			first = next[node];
+		} else {
+			next[previous[node]] = next[node];
+		}
+		if (next[node] == -1) {
+			last = previous[node];
+		} else {
+			previous[next[node]] = previous[node];
+		}
+	}
+
+	// max-heap of pairs (key, sequence of a visit); the invalid entries are removed only
+	// when they reach the top
+	private class LazyMaxHeap {
+		private long[] keys = new long[64];
+		private long[] seqs = new long[64];
+		private int size = 0;
+
+		void add(long key, long seq) {
+			if (size == keys.length) {
+				compact();
+			}
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * size);
+				seqs = Arrays.copyOf(seqs, 2 * size);
+			}
+			int i = size++;
+			while (i > 0 && keys[(i - 1) / 2] < key) {
+				keys[i] = keys[(i - 1) / 2];
+				seqs[i] = seqs[(i - 1) / 2];
+				i = (i - 1) / 2;
+			}
+			keys[i] = key;
+			seqs[i] = seq;
+		}
+
+		// removes all the invalid entries (if they are many), rebuilding the heap
+		private void compact() {
+			int validCount = 0;
+			for (int i = 0; i < size; i++) {
+				if (isValid(seqs[i])) {
+					validCount ++;
+				}
+			}
+			if (validCount > size / 2) {
+				return;  // not worth it, the heap will grow
+			}
+			long[] validKeys = new long[validCount];
+			long[] validSeqs = new long[validCount];
+			validCount = 0;
+			for (int i = 0; i < size; i++) {
+				if (isValid(seqs[i])) {
+					validKeys[validCount] = keys[i];
+					validSeqs[validCount] = seqs[i];
+					validCount ++;
+				}
+			}
+			size = 0;
+			for (int i = 0; i < validCount; i++) {
+				add(validKeys[i], validSeqs[i]);
+			}
+		}
+
+		// removes invalid entries from the top; returns false if the heap becomes empty
+		boolean validateTop() {
+			while (size > 0 && !isValid(seqs[0])) {
+				removeTop();
+			}
+			return size > 0;
+		}
+
+		// an entry is valid if its visit is still in the window, and if it is the 
+		// first visit to its node (only for the heap of first visits)
+		private boolean isValid(long seq) {
+			if (seq < headSeq) {
+				return false;
+			}
+			return this == innerGaps || firstSeq[queueNodes[slot(seq)]] == seq;
+		}
+
+		long topKey() {
+			return keys[0];
+		}
+
+		private void removeTop() {
+			size --;
+			long key = keys[size];
+			long seq = seqs[size];
+			int i = 0, child;
+			while ((child = 2 * i + 1) < size) {
+				if (child + 1 < size && keys[child + 1] > keys[child]) {
+					child ++;
+				}
+				if (keys[child] <= key) {
+					break;
+				}
+				keys[i] = keys[child];
+				seqs[i] = seqs[child];
+				i = child;
+			}
+			keys[i] = key;
+			seqs[i] = seq;
+		}
+	}
+
+}
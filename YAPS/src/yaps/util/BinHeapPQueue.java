@@ -2,7 +2,8 @@ package yaps.util;
 
 
 /**
- * Priority queue implemented as a binary heap.
+ * Priority queue implemented as a binary heap. The elements are compared 
+ * with PQueueElement.precedes().
  * 
  * @author Pablo A. Sampaio
  *
@@ -44,7 +45,7 @@ public class BinHeapPQueue<T extends PQueueElement> implements PQueue<T> {
 		
 		} else if (discardExtra) {
 			
-			if (element.getKey() < heap[usedSize-1].getKey()) {
+			if (element.precedes(heap[usedSize-1])) {
 				heap[usedSize-1] = element;
 				element.setIndex(usedSize-1);
 				
@@ -139,7 +140,7 @@ public class BinHeapPQueue<T extends PQueueElement> implements PQueue<T> {
 		if (position != 0) {
 			int father = (position-1) / 2;
 			
-			if (heap[position].getKey() < heap[father].getKey()) {
+			if (heap[position].precedes(heap[father])) {
 				swap(position, father);
 				siftUp(father);
 			}
@@ -155,13 +156,13 @@ public class BinHeapPQueue<T extends PQueueElement> implements PQueue<T> {
 	    while (filho <= end && !finished) {
 
 	    	// encontra o menor dos filhos
-	        if ( ((filho+1) <= end) && (heap[filho+1].getKey() < heap[filho].getKey()) ) {
+	        if ( ((filho+1) <= end) && heap[filho+1].precedes(heap[filho]) ) {
 	            filho ++;
 	        }
 
 	        // se o menor dos filhos for menor que o pai, troca os dois 
 	        // e continua a partir do filho (seguindo para baixo)
-	        if (heap[filho].getKey() < heap[pai].getKey()) {
+	        if (heap[filho].precedes(heap[pai])) {
 	            swap(pai, filho);
 	            pai = filho;
 	            filho = (2*pai) + 1;
@@ -1,75 +1,155 @@
 package yaps.util;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.Arrays;
 
 
 /**
  * A list of double values implemented along with basic 
  * statistical operations.
+ * <br><br>
+ * The values are kept in an array of primitive doubles. The sum, the mean, the 
+ * variance (by Welford's method), the minimum and the maximum are updated as the 
+ * values are added or changed, so they are returned in constant time.
  * 
  * @author Pablo A. Sampaio
  */
 public class DoubleList {
-	private List<Double> numbers;
+	private double[] numbers;
+	private int size;
+
+	// running statistics
+	private double sum;
+	private double mean;
+	private double m2;          // sum of squared differences from the mean
+	private double min, max;
+	private boolean minMaxDirty; // if a min/max value was changed with set()
 	
 	public DoubleList() {
-		numbers = new LinkedList<Double>();
+		numbers = new double[10];
+		size = 0;
+		clearStatistics();
 	}
 	
+	/**
+	 * Creates a list with 'size' zeros.
+	 */
 	public DoubleList(int size) {
-		numbers = new ArrayList<Double>(size);
-		for (int i = 0; i < size; i++) {
-			numbers.add(0.0d);
+		numbers = new double[Math.max(1, size)];
+		this.size = size;
+		clearStatistics();
+		if (size > 0) {
+			min = 0.0d;
+			max = 0.0d;
 		}
 	}
 	
+	private void clearStatistics() {
+		sum = 0.0d;
+		mean = 0.0d;
+		m2 = 0.0d;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		minMaxDirty = false;
+	}
+	
 	public void add(double n) {
-		numbers.add(n);
+		if (size == numbers.length) {
+			numbers = Arrays.copyOf(numbers, 2 * size);
+		}
+		numbers[size] = n;
+		size ++;
+		
+		sum += n;
+		double delta = n - mean;
+		mean += delta / size;
+		m2 += delta * (n - mean);
+		
+		if (n < min) {
+			min = n;
+		}
+		if (n > max) {
+			max = n;
+		}
 	}
 
 	public void addAll(DoubleList list) {
-		numbers.addAll(list.numbers);
+		if (list.size == 0) {
+			return;
+		}
+		if (size + list.size > numbers.length) {
+			numbers = Arrays.copyOf(numbers, Math.max(size + list.size, 2 * numbers.length));
+		}
+		System.arraycopy(list.numbers, 0, numbers, size, list.size);
+
+		// combines the statistics of both lists
+		int total = size + list.size;
+		double delta = list.mean - mean;
+		
+		m2 = m2 + list.m2 + delta * delta * ((double)size * list.size / total);
+		mean = mean + delta * list.size / total;
+		sum += list.sum;
+		size = total;
+
+		minMaxDirty |= list.minMaxDirty;
+		min = Math.min(min, list.min);
+		max = Math.max(max, list.max);
 	}
 
 	public int size() {
-		return numbers.size();
+		return size;
 	}
 	
 	public double get(int index) {
-		return numbers.get(index);
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		return numbers[index];
 	}
 	
 	public void set(int timeT, double num) {
-		numbers.set(timeT, num);
+		double old = get(timeT);
+		numbers[timeT] = num;
+		
+		sum += num - old;
+		double oldMean = mean;
+		mean += (num - old) / size;
+		m2 += (num - old) * (num - mean + old - oldMean);
+		
+		if ((old == min && num > old) || (old == max && num < old)) {
+			minMaxDirty = true;  // will be recalculated when needed
+		} else {
+			min = Math.min(min, num);
+			max = Math.max(max, num);
+		}
+	}
+
+	private void updateMinMax() {
+		if (minMaxDirty) {
+			min = Double.POSITIVE_INFINITY;
+			max = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < size; i++) {
+				if (numbers[i] < min) {
+					min = numbers[i];
+				}
+				if (numbers[i] > max) {
+					max = numbers[i];
+				}
+			}
+			minMaxDirty = false;
+		}
 	}
 	
 	public double max() {
-		double max = Double.NEGATIVE_INFINITY;		
-		for (double x : numbers) {
-			if (x > max) {
-				max = x;
-			}
-		}		
+		updateMinMax();
 		return max;
 	}
 	
 	public double min() {
-		double min = Double.POSITIVE_INFINITY;		
-		for (double x : numbers) {
-			if (x < min) {
-				min = x;
-			}
-		}		
+		updateMinMax();
 		return min;
 	}
 	
 	public double sum() {
-		double sum = 0.0d;		
-		for (double x : numbers) {
-			sum += x;
-		}		
 		return sum;		
 	}
 	
@@ -86,33 +166,23 @@ public class DoubleList {
 	// also called "root mean square"
 	public double quadraticMean() {
 		double squaredSum = 0.0d;		
-		for (int i = 0; i < numbers.size(); i ++) {
-			squaredSum += numbers.get(i) * numbers.get(i);
+		for (int i = 0; i < size; i ++) {
+			squaredSum += numbers[i] * numbers[i];
 		}
-		return Math.pow(squaredSum/numbers.size(), 0.5d);
+		return Math.pow(squaredSum/size, 0.5d);
 	}
 	
 	//also called "power mean"
 	public double generalizedMean(double p) {
 		double sum = 0.0d;		
-		for (int i = 0; i < numbers.size(); i ++) {
-			sum += Math.pow(numbers.get(i),p);
+		for (int i = 0; i < size; i ++) {
+			sum += Math.pow(numbers[i],p);
 		}		
 		return Math.pow(sum/size() , 1.0d / p);
 	}
 	
 	public double variance() {
-		double sumSquareDifferences = 0.0d;
-		
-		double average = mean();
-		double difference;
-		
-		for (double n : numbers) {
-			difference = (n - average);
-			sumSquareDifferences += (difference * difference);
-		}
-		
-		return sumSquareDifferences / (size() - 1);		
+		return m2 / (size() - 1);		
 	}
 
 	public double standardDeviation() {
@@ -120,7 +190,15 @@ public class DoubleList {
 	}
 
 	public String toString() {
-		return numbers.toString();
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(numbers[i]);
+		}
+		builder.append("]");
+		return builder.toString();
 	}
 	
 }
@@ -25,4 +25,12 @@ public abstract class PQueueElement {
 	
 	public abstract int getKey();
 	
+	/**
+	 * Returns true if this element must leave the queue before the other one. By default,
+	 * it compares the keys, but subclasses may override it (e.g. to break ties).
+	 */
+	public boolean precedes(PQueueElement other) {
+		return getKey() < other.getKey();
+	}
+	
 }
@@ -0,0 +1,73 @@
+package yaps.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * A loop over a range of integers whose iterations are split in blocks that run in
+ * parallel, in a pool of threads shared by the whole library.
+ * <br><br>
+ * Subclasses implement run(from,to), which must be safe to be called concurrently
+ * for disjoint ranges.
+ *
+ * @author Pablo A. Sampaio
+ */
+public abstract class ParallelLoop {
+	private static ForkJoinPool pool;
+
+
+	/**
+	 * The pool used by all parallel loops (one thread per available core).
+	 */
+	public static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
+	/**
+	 * Runs the iterations in the range "from .. to-1".
+	 */
+	protected abstract void run(int from, int to);
+
+	/**
+	 * Runs the loop for the range "from .. to-1", in blocks with at most (approximately)
+	 * "grain" iterations. Returns only after all the iterations have finished.
+	 */
+	public void execute(int from, int to, int grain) {
+		if (grain < 1) {
+			grain = 1;
+		}
+		if (to - from <= grain || getPool().getParallelism() == 1) {
+			run(from, to);
+		} else {
+			getPool().invoke(new Split(from, to, grain));
+		}
+	}
+
+	// divides the range in halves until they reach the grain size
+	private class Split extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to, grain;
+
+		Split(int from, int to, int grain) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				run(from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Split(from, middle, grain), new Split(middle, to, grain));
+			}
+		}
+	}
+
+}
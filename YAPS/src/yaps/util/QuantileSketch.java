@@ -0,0 +1,228 @@
+package yaps.util;
+
+import java.util.Arrays;
+
+
+/**
+ * Counts non-negative integer values in buckets of logarithmic sizes (as in the HDR
+ * histograms), to give approximate quantiles of a stream of values with bounded memory.
+ * <br><br>
+ * With precision p, the values below 2^(p+1) have exact buckets (of size 1), and each
+ * range [2^k, 2^(k+1)) above them is divided in 2^p buckets of equal size. So, the value
+ * returned for a quantile differs from the exact value by less than 1/2^p, relatively
+ * (e.g. less than 1% for p = 7), and the number of buckets is at most 2^p * (64 - p).
+ * The buckets are allocated only up to the largest value seen, so a sketch of small values
+ * takes little memory.
+ * <br><br>
+ * Sketches with the same precision can be merged (e.g. the sketches of several executions
+ * of the same simulation, or of several agents), giving the same sketch of all the values.
+ *
+ * @author Pablo A. Sampaio
+ */
+public class QuantileSketch {
+	public static final int DEFAULT_PRECISION = 7;
+	private static final int INITIAL_BUCKETS = 16;
+
+	private final int precision;
+	private final int subBuckets;  // 2^precision
+
+	private long[] counts;
+	private long totalCount;
+	private long min, max;
+
+
+	public QuantileSketch() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Creates a sketch with buckets of relative size 1/2^precision (from 1 to 20).
+	 */
+	public QuantileSketch(int precision) {
+		if (precision < 1 || precision > 20) {
+			throw new IllegalArgumentException("Invalid precision: " + precision);
+		}
+		this.precision = precision;
+		this.subBuckets = 1 << precision;
+		this.counts = new long[INITIAL_BUCKETS];
+		this.totalCount = 0;
+		this.min = Long.MAX_VALUE;
+		this.max = -1;
+	}
+
+	public int getPrecision() {
+		return precision;
+	}
+
+	// the bucket of the value: below 2*subBuckets, the value itself; above it, the bucket is
+	// given by the position of the highest bit (shift) and by the following 'precision' bits
+	private int bucket(long value) {
+		if (value < 2 * subBuckets) {
+			return (int)value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - precision;
+		return shift * subBuckets + (int)(value >>> shift);
+	}
+
+	private long lowestValue(int bucket) {
+		if (bucket < 2 * subBuckets) {
+			return bucket;
+		}
+		int shift = bucket / subBuckets - 1;
+		return (long)(bucket - shift * subBuckets) << shift;
+	}
+
+	private long highestValue(int bucket) {
+		if (bucket < 2 * subBuckets) {
+			return bucket;
+		}
+		int shift = bucket / subBuckets - 1;
+		return lowestValue(bucket) + (1L << shift) - 1;
+	}
+
+	private void ensureBucket(int bucket) {
+		if (bucket >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length + counts.length / 2));
+		}
+	}
+
+	public void add(long value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Adds 'count' occurrences of the value.
+	 */
+	public void add(long value, long count) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value: " + value);
+		}
+		if (count <= 0) {
+			return;
+		}
+		int b = bucket(value);
+		ensureBucket(b);
+		counts[b] += count;
+
+		totalCount += count;
+		if (value < min) {
+			min = value;
+		}
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Adds one occurrence of each value from 'first' to 'last' (inclusive). It takes time
+	 * proportional to the number of buckets in the range, not to the number of values.
+	 */
+	public void addRange(long first, long last) {
+		if (first < 0) {
+			throw new IllegalArgumentException("Negative value: " + first);
+		}
+		if (last < first) {
+			return;
+		}
+		int b;
+		long value = first;
+		long upTo;
+
+		ensureBucket(bucket(last));
+
+		while (value <= last) {
+			b = bucket(value);
+			upTo = Math.min(highestValue(b), last);
+			counts[b] += upTo - value + 1;
+			value = upTo + 1;
+		}
+
+		totalCount += last - first + 1;
+		if (first < min) {
+			min = first;
+		}
+		if (last > max) {
+			max = last;
+		}
+	}
+
+	/**
+	 * Adds all the values counted in the other sketch, which must have the same precision.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.precision != this.precision) {
+			throw new IllegalArgumentException("Sketches with different precisions: "
+					+ this.precision + " and " + other.precision);
+		}
+		if (other.totalCount == 0) {
+			return;
+		}
+		int lastBucket = bucket(other.max);
+		ensureBucket(lastBucket);
+		for (int b = 0; b <= lastBucket; b++) {
+			counts[b] += other.counts[b];
+		}
+		totalCount += other.totalCount;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Smallest value added (exact), or -1 if the sketch is empty.
+	 */
+	public long getMin() {
+		return totalCount == 0 ? -1 : min;
+	}
+
+	/**
+	 * Largest value added (exact), or -1 if the sketch is empty.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Approximate value of the given quantile (from 0.0 to 1.0), i.e. of the value in the
+	 * position ceil(quantile * count) of the values in increasing order (or the first value,
+	 * for quantile 0). It is the middle of the bucket of that value (limited to the minimum
+	 * and the maximum values). Returns -1 if the sketch is empty.
+	 */
+	public long getQuantile(double quantile) {
+		if (quantile < 0.0d || quantile > 1.0d) {
+			throw new IllegalArgumentException("Invalid quantile: " + quantile);
+		}
+		if (totalCount == 0) {
+			return -1;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(quantile * totalCount));
+		long accumulated = 0;
+		int b = 0;
+
+		while (b < counts.length - 1 && accumulated + counts[b] < rank) {
+			accumulated += counts[b];
+			b ++;
+		}
+
+		long middle = lowestValue(b) + (highestValue(b) - lowestValue(b)) / 2;
+		return Math.max(min, Math.min(max, middle));
+	}
+
+	/**
+	 * Same as getQuantile(percentile / 100).
+	 */
+	public long getPercentile(double percentile) {
+		return getQuantile(percentile / 100.0d);
+	}
+
+	public String toString() {
+		return String.format("[count: %d, min: %d, p50: %d, p95: %d, p99: %d, p99.9: %d, max: %d]",
+				getCount(), getMin(), getPercentile(50), getPercentile(95), getPercentile(99),
+				getPercentile(99.9), getMax());
+	}
+
+}